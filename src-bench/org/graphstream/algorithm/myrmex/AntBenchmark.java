@@ -0,0 +1,94 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the moves of a single ant: {@link Ant#cross(AntEdge, boolean)}
+ * and {@link Ant#jumpRandomly()}.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AntBenchmark {
+	@Param( { "1000", "100000" })
+	public int nodes;
+
+	@Param( { "GRID", "BARABASI_ALBERT" })
+	public Benchmarks.GraphType graph;
+
+	@Param( { "EDGES", "NODES", "NODES_AND_EDGES" })
+	public AntParams.DropOn dropOn;
+
+	protected AntContext ctx;
+	protected Ant ant;
+
+	@Setup
+	public void setup() {
+		ctx = Benchmarks.newContext(dropOn, 1, graph, nodes);
+		ant = ctx.getColony(0).getAnt(0);
+	}
+
+	@Benchmark
+	public AntNode cross() {
+		AntNode node = ant.getCurrentNode();
+
+		if (node.getDegree() > 0)
+			ant.cross(node.<AntEdge> getEdge(0), true);
+
+		return ant.getCurrentNode();
+	}
+
+	@Benchmark
+	public AntNode crossChosenEdge() {
+		AntEdge edge = ant.chooseEdge();
+
+		if (edge != null)
+			ant.cross(edge, true);
+
+		return ant.getCurrentNode();
+	}
+
+	@Benchmark
+	public AntNode jumpRandomly() {
+		ant.jumpRandomly();
+		return ant.getCurrentNode();
+	}
+}
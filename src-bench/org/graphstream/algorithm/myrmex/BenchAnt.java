@@ -0,0 +1,71 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+/**
+ * Ant used by benchmarks. It follows the transition table of its colony and
+ * drops pheromone on each crossed edge, and jumps when it becomes
+ * agoraphobic.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class BenchAnt extends Ant {
+	protected Pheromone<?> pheromone;
+
+	public BenchAnt(String id, Colony colony, AntNode start, AntContext ctx) {
+		super(id, colony, start, ctx);
+		pheromone = new Pheromone<Object>(colony.getIndex(), 0.1f);
+	}
+
+	public void step() {
+		if (curNode == null)
+			return;
+
+		AntParams params = ctx.getAntParams();
+		int marker = colony.getIndex();
+		float own = 0, total = 0;
+
+		for (AntEdge e : curNode.eachEdge()) {
+			Pheromones p = e.getPheromones();
+			own += p.getLoad(marker);
+			total += p.getTotalLoad();
+		}
+
+		if (total > 0 && own / total < params.agoraphobia) {
+			if (params.jump == 1)
+				jumpRandomly();
+			else if (params.jump > 1)
+				jumpFarAway(params.jump);
+
+			return;
+		}
+
+		AntEdge edge = chooseEdge();
+
+		if (edge != null)
+			cross(edge, true);
+	}
+
+	public Pheromone<?> getPheromone() {
+		return pheromone;
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+/**
+ * Colony of {@link BenchAnt}.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class BenchColony extends Colony {
+	public BenchColony() {
+		antFactory = new AntFactory() {
+			public Ant newAnt(String id, AntNode start) {
+				return new BenchAnt(id, BenchColony.this, start, ctx);
+			}
+		};
+	}
+}
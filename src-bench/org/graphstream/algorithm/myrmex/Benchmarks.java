@@ -0,0 +1,133 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import org.graphstream.algorithm.generator.BarabasiAlbertGenerator;
+import org.graphstream.algorithm.generator.BaseGenerator;
+import org.graphstream.algorithm.generator.Generator;
+import org.graphstream.algorithm.generator.GridGenerator;
+import org.graphstream.algorithm.generator.RandomEuclideanGenerator;
+
+/**
+ * Helpers used to build the contexts of the benchmarks.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class Benchmarks {
+	/**
+	 * Synthetic graphs used by benchmarks.
+	 */
+	public static enum GraphType {
+		GRID, BARABASI_ALBERT, RANDOM_GEOMETRIC
+	}
+
+	/**
+	 * Seed used by all benchmarks, so runs are repeatable.
+	 */
+	public static final long SEED = 0x6d79726d6578L;
+
+	/**
+	 * Create and initialize a context, without colonies nor nodes.
+	 * 
+	 * @param dropOn
+	 *            where ants drop pheromones
+	 * @return a new context
+	 */
+	public static AntContext newContext(AntParams.DropOn dropOn) {
+		AntContext ctx = new AntContext();
+		AntParams params = ctx.getAntParams();
+
+		params.colonySpecies = BenchColony.class.getName();
+		params.randomSeed = SEED;
+		params.dropPheromoneOn = dropOn;
+
+		ctx.init();
+
+		return ctx;
+	}
+
+	/**
+	 * Create a context with colonies and a populated graph.
+	 * 
+	 * @param dropOn
+	 *            where ants drop pheromones
+	 * @param colonies
+	 *            number of colonies
+	 * @param type
+	 *            type of the graph
+	 * @param nodes
+	 *            approximative number of nodes
+	 * @return a new context
+	 */
+	public static AntContext newContext(AntParams.DropOn dropOn,
+			int colonies, GraphType type, int nodes) {
+		AntContext ctx = newContext(dropOn);
+
+		// Colonies first, ants are then created when nodes are added.
+		for (int i = 0; i < colonies; i++)
+			ctx.addColony("colony" + i);
+
+		generate(ctx, type, nodes);
+
+		for (Colony c : ctx.eachColony())
+			c.commit();
+
+		return ctx;
+	}
+
+	/**
+	 * Generate a graph in the internal graph of a context. Generators are
+	 * seeded with {@link #SEED}, so runs compare on the same graph.
+	 * 
+	 * @param ctx
+	 *            the context
+	 * @param type
+	 *            type of the graph
+	 * @param nodes
+	 *            approximative number of nodes
+	 */
+	public static void generate(AntContext ctx, GraphType type, int nodes) {
+		Generator gen;
+
+		switch (type) {
+		case GRID:
+			gen = new GridGenerator();
+			break;
+		case BARABASI_ALBERT:
+			gen = new BarabasiAlbertGenerator(2);
+			break;
+		default:
+			gen = new RandomEuclideanGenerator();
+			break;
+		}
+
+		((BaseGenerator) gen).setRandomSeed(SEED);
+		gen.addSink(ctx.getInternalGraph());
+		gen.begin();
+
+		while (ctx.getNodeCount() < nodes)
+			gen.nextEvents();
+
+		gen.end();
+		gen.removeSink(ctx.getInternalGraph());
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the step of a {@link PheromoneMatrix}, with the scalar kernels
+ * and with the default ones, which are the vector kernels when the "vector"
+ * profile is enabled.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class KernelsBenchmark {
+	@Param( { "scalar", "default" })
+	public String kernels;
+
+	@Param( { "4", "16" })
+	public int markers;
+
+	@Param( { "1024", "65536" })
+	public int rows;
+
+	protected PheromoneMatrix matrix;
+	protected Pheromones[] pheromones;
+
+	@Setup
+	public void setup() {
+		matrix = new PheromoneMatrix(markers, rows,
+				kernels.equals("scalar") ? PheromoneKernels.SCALAR
+						: PheromoneKernels.getDefault());
+		pheromones = new Pheromones[rows];
+
+		for (int i = 0; i < rows; i++) {
+			pheromones[i] = matrix.newPheromones();
+			pheromones[i].drop(i % markers, 1);
+		}
+
+		matrix.step(0.9f);
+	}
+
+	@Benchmark
+	public float evaporate() {
+		matrix.step(0.9f);
+		return matrix.getLoad(0, 0);
+	}
+
+	@Benchmark
+	public float evaporateAndDeposit() {
+		for (int i = 0; i < rows; i += 64)
+			pheromones[i].drop(i % markers, 0.1f);
+
+		matrix.step(0.9f);
+		return matrix.getLoad(0, 0);
+	}
+
+	@Benchmark
+	public float totalLoad() {
+		return matrix.getTotalLoad();
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the drop / commit / step cycle of {@link Pheromones}.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PheromonesBenchmark {
+	@Param( { "1", "4", "16" })
+	public int markers;
+
+	@Param( { "1", "8", "64" })
+	public int dropsPerStep;
+
+	protected AntContext ctx;
+	protected Pheromones pheromones;
+	protected Pheromone<?>[] drops;
+
+	@Setup
+	public void setup() {
+		ctx = Benchmarks.newContext(AntParams.DropOn.EDGES);
+		pheromones = new Pheromones(ctx);
+		drops = new Pheromone<?>[markers];
+
+		for (int i = 0; i < markers; i++)
+			drops[i] = new Pheromone<Object>(i, 0.1f);
+	}
+
+	@Benchmark
+	public float dropLoads() {
+		for (int i = 0; i < dropsPerStep; i++)
+			pheromones.drop(i % markers, 0.1f);
+
+		pheromones.step(ctx);
+		return pheromones.getTotalLoad();
+	}
+
+	@Benchmark
+	public float dropPheromones() {
+		for (int i = 0; i < dropsPerStep; i++)
+			pheromones.drop(drops[i % markers]);
+
+		pheromones.step(ctx);
+		return pheromones.getTotalLoad();
+	}
+
+	@Benchmark
+	public float commit() {
+		for (int i = 0; i < dropsPerStep; i++)
+			pheromones.drop(i % markers, 0.1f);
+
+		pheromones.commit();
+		return pheromones.getLoad(0);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.graphstream.algorithm.myrmex.policy.ProportionalPopulationPolicy;
+
+/**
+ * Benchmark of {@link ProportionalPopulationPolicy}, when nodes and colonies
+ * are added.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PopulationPolicyBenchmark {
+	@Param( { "1000", "100000" })
+	public int nodes;
+
+	@Param( { "1", "4", "16" })
+	public int colonies;
+
+	protected AntContext ctx;
+	protected int added;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		ctx = Benchmarks.newContext(AntParams.DropOn.EDGES, colonies,
+				Benchmarks.GraphType.GRID, nodes);
+		added = 0;
+	}
+
+	@Benchmark
+	public int nodeAdded() {
+		ctx.getInternalGraph().addNode("added" + added++);
+		return ctx.getPopulationPolicy().getAntCount();
+	}
+
+	@Benchmark
+	public int colonyAdded() {
+		ctx.addColony("added" + added++);
+		return ctx.getPopulationPolicy().getAntCount();
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import static org.junit.Assert.assertTrue;
+
+import org.graphstream.graph.Graph;
+
+/**
+ * Helpers used to build the contexts of the tests.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class Fixtures {
+	/**
+	 * Seed used by all tests, so runs are repeatable.
+	 */
+	public static final long SEED = 0x6d79726d6578L;
+
+	/**
+	 * Set the parameters shared by the tests : colonies of
+	 * {@link WalkerColony} and a fixed seed.
+	 * 
+	 * @param params
+	 *            parameters of a context, before its initialization
+	 */
+	public static void configure(AntParams params) {
+		params.colonySpecies = WalkerColony.class.getName();
+		params.randomSeed = SEED;
+		params.antsPerVertexPerColony = 4;
+	}
+
+	/**
+	 * Create a context configured for the tests, not initialized yet, so
+	 * other parameters can still be set.
+	 * 
+	 * @return a new context
+	 */
+	public static AntContext newContext() {
+		AntContext ctx = new AntContext();
+		configure(ctx.getAntParams());
+
+		return ctx;
+	}
+
+	/**
+	 * Initialize a context, then add colonies and a grid. Colonies are added
+	 * first, so ants are created when nodes are added.
+	 * 
+	 * @param ctx
+	 *            the context
+	 * @param colonies
+	 *            number of colonies
+	 * @param size
+	 *            width of the grid
+	 */
+	public static void populate(AntContext ctx, int colonies, int size) {
+		ctx.init();
+
+		for (int i = 0; i < colonies; i++)
+			ctx.addColony("colony" + i);
+
+		grid(ctx.getInternalGraph(), size);
+	}
+
+	/**
+	 * Add a square grid to a graph. Nodes are named "x_y", edges are named
+	 * after their nodes, joined by "-".
+	 * 
+	 * @param graph
+	 *            the graph
+	 * @param size
+	 *            width of the grid
+	 */
+	public static void grid(Graph graph, int size) {
+		for (int y = 0; y < size; y++)
+			for (int x = 0; x < size; x++)
+				graph.addNode(x + "_" + y);
+
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				if (x + 1 < size)
+					addEdge(graph, x + "_" + y, (x + 1) + "_" + y);
+				if (y + 1 < size)
+					addEdge(graph, x + "_" + y, x + "_" + (y + 1));
+			}
+		}
+	}
+
+	protected static void addEdge(Graph graph, String from, String to) {
+		graph.addEdge(from + "-" + to, from, to);
+	}
+
+	/**
+	 * Check if two loads are equal, except for the float rounding.
+	 * 
+	 * @param expected
+	 *            expected load
+	 * @param actual
+	 *            actual load
+	 * @return true if the loads are close enough
+	 */
+	public static boolean sameLoad(float expected, float actual) {
+		return Math.abs(expected - actual) <= 1e-4f * Math.max(1, Math
+				.abs(expected));
+	}
+
+	/**
+	 * Check that two pheromones have the same loads, except for the float
+	 * rounding.
+	 * 
+	 * @param expected
+	 *            expected pheromones
+	 * @param actual
+	 *            actual pheromones
+	 */
+	public static void assertSameLoads(Pheromones expected, Pheromones actual) {
+		int markers = Math.max(expected.getMarkerCount(), actual
+				.getMarkerCount());
+
+		assertTrue(sameLoad(expected.getTotalLoad(), actual.getTotalLoad()));
+
+		for (int m = 0; m < markers; m++)
+			assertTrue("marker " + m, sameLoad(expected.getLoad(m), actual
+					.getLoad(m)));
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Only elements with pheromones are stepped, and they are retired once their
+ * loads are not greater than epsilon.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class TestActiveElements {
+	public static final float EPSILON = 0.01f;
+
+	protected AntContext ctx;
+	protected AntEdge edge;
+	protected AntNode node;
+
+	@Before
+	public void setUp() {
+		ctx = Fixtures.newContext();
+
+		AntParams params = ctx.getAntParams();
+		params.epsilon = EPSILON;
+		params.dropPheromoneOn = AntParams.DropOn.NODES_AND_EDGES;
+
+		// No colony, loads are only dropped by the test.
+		Fixtures.populate(ctx, 0, 3);
+
+		edge = ctx.getInternalGraph().getEdge("0_0-1_0");
+		node = ctx.getInternalGraph().getNode("1_1");
+	}
+
+	/**
+	 * Number of steps after which a load is not greater than epsilon.
+	 */
+	protected int stepsToEpsilon(float load) {
+		int steps = 0;
+
+		while (load > EPSILON) {
+			load *= ctx.getAntParams().rho;
+			steps++;
+		}
+
+		return steps;
+	}
+
+	@Test
+	public void testRetirement() {
+		edge.ensurePheromones().drop(0, 1);
+		node.ensurePheromones().drop(0, 1);
+
+		assertEquals(1, ctx.activeEdgeCount);
+		assertEquals(1, ctx.activeNodeCount);
+
+		// Deposits are committed by the first step, then evaporate.
+		int steps = stepsToEpsilon(1);
+
+		for (int i = 0; i <= steps; i++) {
+			assertTrue(edge.activeIndex >= 0);
+			assertTrue(node.activeIndex >= 0);
+			ctx.step();
+		}
+
+		assertEquals(0, ctx.activeEdgeCount);
+		assertEquals(0, ctx.activeNodeCount);
+		assertEquals(-1, edge.activeIndex);
+		assertEquals(-1, node.activeIndex);
+
+		// Evaporated pheromones go back to the shared empty ones.
+		assertNull(edge.pheromones);
+		assertNull(node.pheromones);
+		assertSame(Pheromones.EMPTY, edge.getPheromones());
+	}
+
+	@Test
+	public void testReactivation() {
+		AntEdge other = ctx.getInternalGraph().getEdge("1_0-2_0");
+
+		edge.ensurePheromones().drop(0, 1);
+		other.ensurePheromones().drop(0, 1);
+
+		for (int i = 0; i <= stepsToEpsilon(1); i++)
+			ctx.step();
+
+		assertEquals(0, ctx.activeEdgeCount);
+
+		// Dropping again activates the edge, and only this one.
+		edge.ensurePheromones().drop(0, 1);
+		ctx.step();
+
+		assertEquals(1, ctx.activeEdgeCount);
+		assertSame(edge, ctx.activeEdges[0]);
+		assertEquals(1, edge.getPheromones().getLoad(0), 0);
+		assertSame(Pheromones.EMPTY, other.getPheromones());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDropOnEmpty() {
+		// Pheromones of elements without loads are shared.
+		edge.getPheromones().drop(0, 1);
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * A checkpoint written, read back and applied on a context fed with the same
+ * graph restores the state of the checkpointed context, and both contexts then
+ * run the same steps.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class TestCheckpoint {
+	public static final int STEPS = 10;
+
+	protected AntContext newContext() {
+		AntContext ctx = Fixtures.newContext();
+		ctx.getAntParams().dropPheromoneOn = AntParams.DropOn.NODES_AND_EDGES;
+		Fixtures.populate(ctx, 2, 5);
+
+		return ctx;
+	}
+
+	protected static Checkpoint roundTrip(Checkpoint cp) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		cp.write(out);
+
+		return Checkpoint.read(ByteBuffer.wrap(out.toByteArray()));
+	}
+
+	protected static void assertSameState(AntContext expected,
+			AntContext actual) {
+		AntGraph graph = actual.getInternalGraph();
+
+		assertEquals(expected.getCurrentStep(), actual.getCurrentStep());
+
+		for (AntNode n : expected.eachNode()) {
+			AntNode other = graph.getNode(n.getId());
+
+			assertEquals(n.getResidentCount(), other.getResidentCount());
+			Fixtures.assertSameLoads(n.getPheromones(), other
+					.getPheromones());
+		}
+
+		for (AntEdge e : expected.eachEdge()) {
+			AntEdge other = graph.getEdge(e.getId());
+			Fixtures.assertSameLoads(e.getPheromones(), other
+					.getPheromones());
+		}
+
+		for (int m = 0; m < expected.getColonyCount(); m++)
+			assertTrue(Fixtures.sameLoad(expected.getTotalLoad(m), actual
+					.getTotalLoad(m)));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		AntContext ctx = newContext();
+		AntContext restored = newContext();
+
+		try {
+			for (int i = 0; i < STEPS; i++)
+				ctx.step();
+
+			Checkpoint cp = roundTrip(Checkpoint.capture(ctx));
+			cp.apply(restored);
+
+			assertTrue(ctx.getTotalLoad(0) > 0);
+			assertEquals(ctx.getColony(0).getAntCount(), restored
+					.getColony(0).getAntCount());
+			assertSameState(ctx, restored);
+
+			// Ants are restored in the same slots, so they draw from the
+			// same streams.
+			for (int i = 0; i < STEPS; i++) {
+				ctx.step();
+				restored.step();
+			}
+
+			assertSameState(ctx, restored);
+		} finally {
+			ctx.terminate();
+			restored.terminate();
+		}
+	}
+
+	@Test
+	public void testMissingElements() throws IOException {
+		AntContext ctx = newContext();
+		AntContext restored = newContext();
+
+		try {
+			for (int i = 0; i < STEPS; i++)
+				ctx.step();
+
+			Checkpoint cp = roundTrip(Checkpoint.capture(ctx));
+
+			// Ants of a node which does not exist anymore are put on another
+			// node, its edges are ignored.
+			restored.getInternalGraph().removeNode("2_2");
+			cp.apply(restored);
+
+			int ants = 0;
+
+			for (AntNode n : restored.eachNode())
+				ants += n.getResidentCount();
+
+			for (AntNode n : ctx.eachNode())
+				ants -= n.getResidentCount();
+
+			assertEquals(0, ants);
+
+			// Placing these ants does not change the restored streams.
+			assertEquals(cp.defaultStreams, restored.defaultStreams);
+		} finally {
+			ctx.terminate();
+			restored.terminate();
+		}
+	}
+
+	@Test
+	public void testNewElements() throws IOException {
+		AntContext ctx = newContext();
+		AntContext restored = newContext();
+
+		try {
+			for (int i = 0; i < STEPS; i++) {
+				ctx.step();
+				restored.step();
+			}
+
+			Checkpoint cp = roundTrip(Checkpoint.capture(ctx));
+
+			// Elements missing in the checkpoint lose their loads.
+			AntGraph graph = restored.getInternalGraph();
+			graph.addNode("extra");
+			graph.addEdge("extra-0_0", "extra", "0_0");
+
+			AntNode n = graph.getNode("extra");
+			AntEdge e = graph.getEdge("extra-0_0");
+			n.ensurePheromones().setLoad(0, 10);
+			e.ensurePheromones().setLoad(0, 10);
+			cp.apply(restored);
+
+			assertEquals(0, n.getPheromones().getTotalLoad(), 0);
+			assertEquals(0, e.getPheromones().getTotalLoad(), 0);
+			assertSameState(ctx, restored);
+		} finally {
+			ctx.terminate();
+			restored.terminate();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Ants added and removed between two commits of a colony.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class TestColony {
+	protected AntContext ctx;
+	protected Colony colony;
+	protected AntNode a, b;
+
+	@Before
+	public void setUp() {
+		ctx = Fixtures.newContext();
+		Fixtures.populate(ctx, 1, 2);
+
+		colony = ctx.getColony(0);
+		colony.commit();
+
+		a = ctx.getInternalGraph().getNode("0_0");
+		b = ctx.getInternalGraph().getNode("1_1");
+	}
+
+	/**
+	 * Check that the table of the colony is dense and that each ant knows its
+	 * slot.
+	 */
+	protected void assertDense() {
+		int residents = 0;
+
+		for (int i = 0; i < colony.getAntCount(); i++) {
+			Ant ant = colony.getAnt(i);
+
+			assertEquals(i, ant.slot);
+			assertFalse(ant.removing);
+		}
+
+		for (AntNode n : ctx.eachNode())
+			residents += n.getResidentCount();
+
+		assertEquals(colony.getAntCount(), residents);
+	}
+
+	@Test
+	public void testSwapRemove() {
+		int count = colony.getAntCount();
+		Ant first = colony.getAnt(0);
+		Ant middle = colony.getAnt(count / 2);
+		Ant last = colony.getAnt(count - 1);
+
+		assertTrue(colony.removeAnt(first));
+		assertTrue(colony.removeAnt(middle));
+		assertFalse(colony.removeAnt(middle));
+
+		colony.commit();
+
+		assertEquals(count - 2, colony.getAntCount());
+		assertEquals(-1, first.slot);
+		assertEquals(-1, middle.slot);
+		assertNull(first.getCurrentNode());
+		assertTrue(last.slot >= 0);
+		assertSame(last, colony.getAnt(last.slot));
+		assertDense();
+	}
+
+	@Test
+	public void testPendingAddsAndRemoves() {
+		int count = colony.getAntCount();
+
+		colony.addAnt("x", a);
+		colony.addAnt("y", b);
+		colony.addAnts(a, 3);
+
+		Ant x = colony.namedAnts.get("x");
+
+		// Removed before being committed, x is never added.
+		assertTrue(colony.removeAnt(x));
+		assertTrue(colony.removeAnt(colony.getAnt(0)));
+
+		colony.commit();
+
+		assertEquals(count + 3, colony.getAntCount());
+		assertEquals(-1, x.slot);
+		assertFalse(colony.namedAnts.containsKey("x"));
+		assertTrue(colony.namedAnts.get("y").slot >= 0);
+		assertDense();
+	}
+
+	@Test
+	public void testCancelledNamedRemoval() {
+		colony.addAnt("x", a);
+		colony.commit();
+
+		int count = colony.getAntCount();
+		Ant x = colony.namedAnts.get("x");
+
+		assertTrue(colony.removeAnt(x));
+
+		// Adding the same name again cancels the removal.
+		colony.addAnt("x", b);
+		colony.commit();
+
+		assertEquals(count, colony.getAntCount());
+		assertSame(x, colony.namedAnts.get("x"));
+		assertSame(x, colony.getAnt(x.slot));
+		assertSame(b, x.getCurrentNode());
+		assertDense();
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Loads evaporated on read are the loads evaporated at each step, except for
+ * the float rounding.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class TestLazyPheromones {
+	public static final int STEPS = 30;
+
+	protected AntContext newContext(boolean lazy) {
+		AntContext ctx = Fixtures.newContext();
+		AntParams params = ctx.getAntParams();
+
+		params.lazyEvaporation = lazy;
+		params.dropPheromoneOn = AntParams.DropOn.NODES_AND_EDGES;
+
+		Fixtures.populate(ctx, 2, 6);
+
+		return ctx;
+	}
+
+	@Test
+	public void testSameLoads() {
+		AntContext eager = newContext(false);
+		AntContext lazy = newContext(true);
+
+		try {
+			for (int i = 0; i < STEPS; i++) {
+				eager.step();
+				lazy.step();
+			}
+
+			AntGraph graph = lazy.getInternalGraph();
+
+			for (AntEdge e : eager.eachEdge()) {
+				AntEdge other = graph.getEdge(e.getId());
+				Fixtures.assertSameLoads(e.getPheromones(), other
+						.getPheromones());
+			}
+
+			for (AntNode n : eager.eachNode()) {
+				AntNode other = graph.getNode(n.getId());
+				Fixtures.assertSameLoads(n.getPheromones(), other
+						.getPheromones());
+			}
+
+			for (int m = 0; m < eager.getColonyCount(); m++)
+				assertTrue(Fixtures.sameLoad(eager.getTotalLoad(m), lazy
+						.getTotalLoad(m)));
+		} finally {
+			eager.terminate();
+			lazy.terminate();
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Steps run by several workers give the same results as sequential steps
+ * with the same seed and chunk size.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class TestParallelStep {
+	public static final int STEPS = 20;
+
+	protected AntContext newContext(int parallelism) {
+		AntContext ctx = Fixtures.newContext();
+		AntParams params = ctx.getAntParams();
+
+		params.parallelism = parallelism;
+		params.chunkSize = 16;
+		params.dropPheromoneOn = AntParams.DropOn.NODES_AND_EDGES;
+
+		Fixtures.populate(ctx, 2, 8);
+
+		return ctx;
+	}
+
+	@Test
+	public void testSameResults() {
+		AntContext sequential = newContext(1);
+		AntContext parallel = newContext(4);
+
+		try {
+			for (int i = 0; i < STEPS; i++) {
+				sequential.step();
+				parallel.step();
+
+				assertEquals(sequential.getJumps(), parallel.getJumps());
+			}
+
+			AntGraph graph = parallel.getInternalGraph();
+
+			for (AntNode n : sequential.eachNode()) {
+				AntNode other = graph.getNode(n.getId());
+
+				for (Colony colony : sequential.eachColony())
+					assertEquals(n.getAntCountForColony(colony), other
+							.getAntCountForColony(parallel.getColony(colony
+									.getIndex())));
+
+				Fixtures.assertSameLoads(n.getPheromones(), other
+						.getPheromones());
+			}
+
+			for (AntEdge e : sequential.eachEdge()) {
+				AntEdge other = graph.getEdge(e.getId());
+				Fixtures.assertSameLoads(e.getPheromones(), other
+						.getPheromones());
+			}
+
+			assertTrue(sequential.getTotalLoad(0) > 0);
+
+			for (int m = 0; m < sequential.getColonyCount(); m++)
+				assertTrue(Fixtures.sameLoad(sequential.getTotalLoad(m),
+						parallel.getTotalLoad(m)));
+		} finally {
+			sequential.terminate();
+			parallel.terminate();
+		}
+	}
+}
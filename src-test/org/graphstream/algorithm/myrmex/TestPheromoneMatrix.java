@@ -0,0 +1,102 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Rows and columns of a pheromone matrix : growth keeps the loads and
+ * released rows are reused.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class TestPheromoneMatrix {
+	@Test
+	public void testGrowth() {
+		PheromoneMatrix matrix = new PheromoneMatrix(1, 16);
+		Pheromones[] rows = new Pheromones[40];
+
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = matrix.newPheromones();
+			rows[i].setLoad(0, i + 1);
+		}
+
+		assertEquals(rows.length, matrix.getRowCount());
+
+		// A new marker adds a column to all the rows.
+		rows[0].setLoad(3, 0.5f);
+
+		assertEquals(4, matrix.getMarkerCount());
+
+		for (int i = 0; i < rows.length; i++) {
+			assertEquals(i + 1, rows[i].getLoad(0), 0);
+			assertEquals(i == 0 ? 0.5f : 0, rows[i].getLoad(3), 0);
+			assertEquals(4, rows[i].getMarkerCount());
+		}
+	}
+
+	@Test
+	public void testSlotReuse() {
+		PheromoneMatrix matrix = new PheromoneMatrix(2, 16);
+		PheromoneMatrix.MatrixPheromones a = row(matrix);
+		PheromoneMatrix.MatrixPheromones b = row(matrix);
+
+		a.setLoad(1, 2);
+		b.setLoad(1, 3);
+		a.release();
+
+		assertEquals(1, matrix.getRowCount());
+
+		PheromoneMatrix.MatrixPheromones c = row(matrix);
+
+		// The released row is reused, cleared.
+		assertEquals(a.slot, c.slot);
+		assertEquals(0, c.getTotalLoad(), 0);
+		assertEquals(3, b.getLoad(1), 0);
+		assertEquals(2, matrix.getRowCount());
+	}
+
+	@Test
+	public void testStep() {
+		PheromoneMatrix matrix = new PheromoneMatrix(1, 16);
+		Pheromones p = matrix.newPheromones();
+
+		p.drop(0, 1);
+
+		// Deposits are only added by the step.
+		assertEquals(0, p.getLoad(0), 0);
+
+		matrix.step(0.5f);
+		assertEquals(1, p.getLoad(0), 0);
+
+		matrix.step(0.5f);
+		assertEquals(0.5f, p.getLoad(0), 0);
+		assertEquals(0.5f, matrix.getTotalLoad(), 0);
+	}
+
+	protected static PheromoneMatrix.MatrixPheromones row(
+			PheromoneMatrix matrix) {
+		return (PheromoneMatrix.MatrixPheromones) matrix.newPheromones();
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.graphstream.stream.SinkAdapter;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Events of elements added then removed within a batch cancel each other,
+ * other events are applied in their order.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class TestTopologyBuffer {
+	/**
+	 * Sink recording the events applied by the buffer.
+	 */
+	protected static class Recorder extends SinkAdapter {
+		ArrayList<String> events = new ArrayList<String>();
+
+		public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			events.add("+" + nodeId);
+		}
+
+		public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+			events.add("-" + nodeId);
+		}
+
+		public void edgeAdded(String sourceId, long timeId, String edgeId,
+				String fromNodeId, String toNodeId, boolean directed) {
+			events.add("+" + edgeId);
+		}
+
+		public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+			events.add("-" + edgeId);
+		}
+
+		public void graphCleared(String sourceId, long timeId) {
+			events.add("clear");
+		}
+
+		public void nodeAttributeAdded(String sourceId, long timeId,
+				String nodeId, String attribute, Object value) {
+			events.add(nodeId + "." + attribute);
+		}
+	}
+
+	protected Recorder recorder;
+	protected TopologyBuffer buffer;
+
+	@Before
+	public void setUp() {
+		recorder = new Recorder();
+		buffer = new TopologyBuffer(new AntContext(), recorder, 1024);
+	}
+
+	protected void assertApplied(String... events) {
+		assertEquals(Arrays.asList(events), recorder.events);
+	}
+
+	@Test
+	public void testAddedThenRemovedNode() {
+		buffer.nodeAdded("s", 0, "a");
+		buffer.nodeAdded("s", 1, "b");
+		buffer.nodeAttributeAdded("s", 2, "a", "x", 1);
+		buffer.edgeAdded("s", 3, "ab", "a", "b", false);
+		buffer.nodeRemoved("s", 4, "a");
+		buffer.flush();
+
+		// The edge and the attribute of the node are cancelled with it.
+		assertApplied("+b");
+		assertEquals(1, buffer.getAppliedCount());
+	}
+
+	@Test
+	public void testAddedThenRemovedEdge() {
+		buffer.nodeAdded("s", 0, "a");
+		buffer.nodeAdded("s", 1, "b");
+		buffer.edgeAdded("s", 2, "ab", "a", "b", false);
+		buffer.edgeRemoved("s", 3, "ab");
+		buffer.flush();
+
+		assertApplied("+a", "+b");
+	}
+
+	@Test
+	public void testSealedEventsAreKept() {
+		buffer.nodeAdded("s", 0, "a");
+		buffer.seal();
+
+		// The addition belongs to a closed batch, the removal can not cancel
+		// it anymore.
+		buffer.nodeRemoved("s", 1, "a");
+		buffer.flush();
+
+		assertApplied("+a", "-a");
+		assertEquals(0, buffer.getCancelledCount());
+	}
+
+	@Test
+	public void testGraphCleared() {
+		buffer.nodeAdded("s", 0, "a");
+		buffer.nodeRemoved("s", 1, "b");
+		buffer.graphCleared("s", 2);
+		buffer.nodeAdded("s", 3, "c");
+		buffer.flush();
+
+		assertApplied("clear", "+c");
+	}
+
+	@Test
+	public void testCapacity() {
+		buffer.setCapacity(2);
+		buffer.nodeAdded("s", 0, "a");
+		buffer.nodeAdded("s", 1, "b");
+
+		// The batch has been applied when full.
+		assertApplied("+a", "+b");
+		assertEquals(0, buffer.getPendingCount());
+
+		buffer.nodeRemoved("s", 2, "a");
+		buffer.flush();
+
+		assertApplied("+a", "+b", "-a");
+	}
+}
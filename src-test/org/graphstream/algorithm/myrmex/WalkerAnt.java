@@ -0,0 +1,62 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.util.SplittableRandom;
+
+/**
+ * Ant used by tests. It crosses a random edge of its node and drops
+ * pheromone on it, and sometimes jumps to a random node. Its moves only
+ * depend on its random stream, never on the loads, so contexts with
+ * different pheromone storages move their ants the same way.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class WalkerAnt extends Ant {
+	protected Pheromone<?> pheromone;
+
+	public WalkerAnt(String id, Colony colony, AntNode start, AntContext ctx) {
+		super(id, colony, start, ctx);
+		pheromone = new Pheromone<Object>(colony.getIndex(), 0.1f);
+	}
+
+	public void step() {
+		if (curNode == null)
+			return;
+
+		SplittableRandom random = random();
+
+		if (random.nextInt(16) == 0) {
+			jumpRandomly();
+			return;
+		}
+
+		int degree = curNode.getDegree();
+
+		if (degree > 0)
+			cross(curNode.<AntEdge> getEdge(random.nextInt(degree)), true);
+	}
+
+	public Pheromone<?> getPheromone() {
+		return pheromone;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex.shard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.graphstream.algorithm.myrmex.AntEdge;
+import org.graphstream.algorithm.myrmex.Colony;
+import org.graphstream.algorithm.myrmex.Fixtures;
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.implementations.SingleGraph;
+import org.junit.Test;
+
+/**
+ * Two shards linked by a {@link LocalTransport} : ants migrate between them
+ * and the loads of the edges between the shards stay equal on both sides.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class TestShardGroup {
+	public static final int STEPS = 10;
+
+	protected static int committedAnts(ShardGroup group) {
+		int ants = 0;
+
+		for (int i = 0; i < group.getShardCount(); i++) {
+			for (Colony colony : group.getShard(i).getContext().eachColony()) {
+				colony.commit();
+				ants += colony.getAntCount();
+			}
+		}
+
+		return ants;
+	}
+
+	@Test
+	public void testMigrationsAndBoundaries() throws IOException {
+		ShardGroup group = new ShardGroup(2);
+		HashPartition partition = new HashPartition();
+		Graph graph = new SingleGraph("grid");
+
+		Fixtures.grid(graph, 6);
+
+		for (int i = 0; i < group.getShardCount(); i++)
+			Fixtures.configure(group.getShard(i).getContext().getAntParams());
+
+		try {
+			group.init();
+			group.addColony("colony0");
+			group.load(graph);
+
+			int ants = committedAnts(group);
+			int migrations = 0;
+
+			for (int s = 0; s < STEPS; s++) {
+				group.step();
+
+				for (int i = 0; i < group.getShardCount(); i++)
+					migrations += group.getShard(i).getContext()
+							.getMigrations();
+			}
+
+			long emigrants = 0, immigrants = 0;
+
+			for (int i = 0; i < group.getShardCount(); i++) {
+				emigrants += group.getShard(i).getEmigrantCount();
+				immigrants += group.getShard(i).getImmigrantCount();
+			}
+
+			assertTrue(emigrants > 0);
+			assertEquals(emigrants, immigrants);
+			assertTrue(migrations > 0);
+
+			// Ants are only moved, never lost.
+			assertEquals(ants, committedAnts(group));
+
+			int boundaries = 0;
+			float load = 0;
+
+			for (Edge e : graph.getEdgeSet()) {
+				int o0 = partition.getShard(e.getNode0().getId(), 2);
+				int o1 = partition.getShard(e.getNode1().getId(), 2);
+
+				if (o0 == o1)
+					continue;
+
+				AntEdge e0 = group.getShard(o0).getContext()
+						.getInternalGraph().getEdge(e.getId());
+				AntEdge e1 = group.getShard(o1).getContext()
+						.getInternalGraph().getEdge(e.getId());
+
+				assertTrue(Fixtures.sameLoad(e0.getPheromones().getLoad(0),
+						e1.getPheromones().getLoad(0)));
+				load += e0.getPheromones().getLoad(0);
+				boundaries++;
+			}
+
+			assertTrue(boundaries > 0);
+			assertTrue(load > 0);
+		} finally {
+			group.terminate();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Pheromone kernels written with the Vector API, processing as many floats
+ * per instruction as the preferred vector size of the CPU allows. The tail of
+ * the arrays is processed by scalar loops.
+ * 
+ * This class is compiled by the "vector" build profile only, and is loaded by
+ * {@link PheromoneKernels#getDefault()}.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class VectorKernels extends PheromoneKernels {
+	protected static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	protected static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+	public void evaporate(ByteBuffer loads, int n, float rho) {
+		int bound = SPECIES.loopBound(n);
+		int step = SPECIES.length();
+		int i = 0;
+
+		for (; i < bound; i += step) {
+			int b = i << 2;
+			FloatVector.fromByteBuffer(SPECIES, loads, b, ORDER).mul(rho)
+					.intoByteBuffer(loads, b, ORDER);
+		}
+
+		for (; i < n; i++)
+			loads.putFloat(i << 2, loads.getFloat(i << 2) * rho);
+	}
+
+	public void evaporateAndDeposit(ByteBuffer loads, ByteBuffer deposits,
+			int n, float rho) {
+		FloatVector zero = FloatVector.zero(SPECIES);
+		int bound = SPECIES.loopBound(n);
+		int step = SPECIES.length();
+		int i = 0;
+
+		for (; i < bound; i += step) {
+			int b = i << 2;
+			FloatVector d = FloatVector.fromByteBuffer(SPECIES, deposits, b,
+					ORDER);
+
+			// Not a fused multiply-add, to round as the scalar kernels do.
+			FloatVector.fromByteBuffer(SPECIES, loads, b, ORDER).mul(rho).add(
+					d).intoByteBuffer(loads, b, ORDER);
+			zero.intoByteBuffer(deposits, b, ORDER);
+		}
+
+		for (; i < n; i++) {
+			int b = i << 2;
+			loads.putFloat(b, loads.getFloat(b) * rho + deposits.getFloat(b));
+			deposits.putFloat(b, 0);
+		}
+	}
+
+	public float sum(ByteBuffer loads, int from, int n) {
+		int bound = SPECIES.loopBound(n);
+		int step = SPECIES.length();
+		int i = 0;
+		float t = 0;
+
+		if (bound > 0) {
+			FloatVector acc = FloatVector.zero(SPECIES);
+
+			for (; i < bound; i += step)
+				acc = acc.add(FloatVector.fromByteBuffer(SPECIES, loads,
+						(from + i) << 2, ORDER));
+
+			t = acc.reduceLanes(VectorOperators.ADD);
+		}
+
+		for (; i < n; i++)
+			t += loads.getFloat((from + i) << 2);
+
+		return t;
+	}
+
+	public String getName() {
+		return "vector-" + SPECIES.vectorBitSize();
+	}
+}
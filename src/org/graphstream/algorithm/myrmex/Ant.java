@@ -20,11 +20,16 @@
  */
 package org.graphstream.algorithm.myrmex;
 
+import java.util.SplittableRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The base-class for defining ants.
  * 
+ * Ants drop pheromones with {@link #drop(Pheromonable, Pheromone)}. Elements
+ * on which nothing has been dropped share read-only pheromones, see
+ * {@link Pheromonable#getPheromones()}.
+ * 
  * @author adutot, gsavin
  * 
  */
@@ -33,9 +38,28 @@ public abstract class Ant {
 	protected static AtomicInteger automaticIdAtomic = new AtomicInteger(0);
 
 	/**
-	 * The id of this ant.
+	 * The id of this ant. Automatic ids are only formatted when
+	 * {@link #getId()} is called.
+	 */
+	protected String id;
+	/**
+	 * Serial number used to build the automatic id.
+	 */
+	protected int serial;
+	/**
+	 * True if the id of this ant is built from its serial number.
+	 */
+	protected boolean automatic;
+	/**
+	 * Index of this ant in the table of its colony, -1 if the ant is not
+	 * committed yet.
+	 */
+	protected int slot = -1;
+	/**
+	 * Flag indicating that the ant will be removed at the next commit of its
+	 * colony.
 	 */
-	protected final String id;
+	protected boolean removing = false;
 	/**
 	 * The colony of the ant.
 	 */
@@ -48,6 +72,12 @@ public abstract class Ant {
 	 * The context in which this ant evolve.
 	 */
 	protected AntContext ctx;
+	/**
+	 * Links of the list of ants registered on the same node, see
+	 * {@link AntNode#eachResident()}.
+	 */
+	protected Ant prevResident;
+	protected Ant nextResident;
 
 	/**
 	 * Constructor for an ant.
@@ -59,26 +89,73 @@ public abstract class Ant {
 	 */
 	public Ant(String id, Colony colony, AntNode start, AntContext ctx) {
 		if (id == null)
-			// id = String.format( "ant-%X-%X", automaticId++,
-			// System.currentTimeMillis() ).toLowerCase();
-			id = String.format("ant-%X", automaticIdAtomic.getAndIncrement());
+			serial = automaticIdAtomic.getAndIncrement();
 
 		this.id = id;
+		this.automatic = id == null;
 		this.colony = colony;
 		this.ctx = ctx;
 
 		goTo(start);
 	}
 
+	/**
+	 * Reinitialize an ant taken from the pool of its colony, as the
+	 * constructor would do for a new ant. Ants with their own state have to
+	 * override this method and call it.
+	 * 
+	 * @param id
+	 *            new id of the ant, null for an automatic id
+	 * @param start
+	 *            new position of the ant
+	 */
+	protected void reset(String id, AntNode start) {
+		if (id == null)
+			serial = automaticIdAtomic.getAndIncrement();
+
+		this.id = id;
+		this.automatic = id == null;
+		this.slot = -1;
+		this.removing = false;
+		this.prevResident = null;
+		this.nextResident = null;
+		this.curNode = null;
+
+		goTo(start);
+	}
+
 	/**
 	 * Accessor for the id attribute.
 	 * 
 	 * @return id of this ant
 	 */
 	public String getId() {
+		if (id == null)
+			id = String.format("%s_%05x", colony.getName(), serial);
+
 		return id;
 	}
 
+	/**
+	 * Check if the id of this ant has been built automatically. Automatic ids
+	 * are only unique in the JVM which created the ant.
+	 * 
+	 * @return true if no id was given when the ant was created
+	 */
+	public boolean isAutomaticId() {
+		return automatic;
+	}
+
+	/**
+	 * Random stream to use for the decisions of this ant. This is the stream
+	 * of the chunk being stepped, see {@link AntContext#currentRandom()}.
+	 * 
+	 * @return random stream
+	 */
+	public SplittableRandom random() {
+		return ctx.currentRandom();
+	}
+
 	/**
 	 * Accessor for the colony attribute.
 	 * 
@@ -107,11 +184,17 @@ public abstract class Ant {
 	 *            The destination node.
 	 */
 	public void goTo(AntNode newNode) {
-		if (curNode != null)
-			curNode.unregisterAnt(this);
+		StepBuffer buffer = ctx.currentStepBuffer();
 
-		if (newNode != null)
-			newNode.registerAnt(this);
+		if (buffer != null) {
+			buffer.move(this, curNode, newNode);
+		} else {
+			if (curNode != null)
+				curNode.unregisterAnt(this);
+
+			if (newNode != null)
+				newNode.registerAnt(this);
+		}
 
 		curNode = newNode;
 	}
@@ -145,36 +228,98 @@ public abstract class Ant {
 		goTo(newNode);
 
 		if (dropPheromon && ctx.getAntParams().getDropPheromoneOn().onEdges)
-			edge.getPheromones().drop(getPheromone());
+			drop(edge, getPheromone());
 
 		if (dropPheromon && ctx.getAntParams().getDropPheromoneOn().onNodes)
-			newNode.getPheromones().drop(getPheromone());
+			drop(newNode, getPheromone());
 	}
 
 	/**
-	 * Jump to a random node in the graph. This method is quite heavy and may,
-	 * at worst, iterate on all nodes of the graph.
+	 * Choose an edge of the current node, according to the transition table
+	 * of the colony of this ant.
+	 * 
+	 * @return the chosen edge, or null if the current node has no edge
+	 * @see TransitionTable
 	 */
-	protected void jumpRandomly() {
-		AntNode node = null;
-		int n = ctx.getNodeCount();
+	protected AntEdge chooseEdge() {
+		if (curNode == null)
+			return null;
 
-		if (n <= 0)
-			return;
+		return curNode.getTransitions(colony).sample(random().nextDouble());
+	}
 
-		int r = ctx.random().nextInt(n);
-		int i = 0;
+	/**
+	 * Drop a pheromone on an element. Plain pheromones, which carry no data,
+	 * are dropped as primitive loads.
+	 * 
+	 * @param element
+	 *            the edge or node on which pheromone is dropped
+	 * @param pheromone
+	 *            the dropped pheromone
+	 */
+	protected void drop(Pheromonable element, Pheromone<?> pheromone) {
+		if (pheromone.getClass() == Pheromone.class
+				&& pheromone.getData() == null)
+			drop(element, pheromone.getMarker(), pheromone.getLoad());
+		else
+			dropPheromone(element, pheromone);
+	}
 
-		for (AntNode tmpNode : ctx.eachNode()) {
-			if (i == r) {
-				node = tmpNode;
-				break;
-			}
+	/**
+	 * Drop a pheromone object on an element. When the step is run in
+	 * parallel, the drop is buffered and applied at the end of the ants phase.
+	 * Ants should always use this method rather than dropping directly on the
+	 * pheromones of the element.
+	 * 
+	 * @param element
+	 *            the edge or node on which pheromone is dropped
+	 * @param pheromone
+	 *            the dropped pheromone
+	 */
+	protected void dropPheromone(Pheromonable element, Pheromone<?> pheromone) {
+		StepBuffer buffer = ctx.currentStepBuffer();
+
+		if (buffer != null)
+			buffer.drop(element, pheromone);
+		else {
+			element.ensurePheromones().drop(pheromone);
+			ctx.deposited(pheromone.getMarker(), pheromone.getLoad());
+		}
+	}
 
-			i++;
+	/**
+	 * Drop a load of pheromone on an element, without allocating a pheromone
+	 * object. As for {@link #dropPheromone(Pheromonable, Pheromone)}, the drop
+	 * is buffered when the step is run in parallel.
+	 * 
+	 * @param element
+	 *            the edge or node on which pheromone is dropped
+	 * @param marker
+	 *            marker of the pheromone
+	 * @param load
+	 *            the dropped load
+	 */
+	protected void drop(Pheromonable element, int marker, float load) {
+		StepBuffer buffer = ctx.currentStepBuffer();
+
+		if (buffer != null)
+			buffer.drop(element, marker, load);
+		else {
+			element.ensurePheromones().drop(marker, load);
+			ctx.deposited(marker, load);
 		}
+	}
+
+	/**
+	 * Jump to a random node in the graph. The node is picked in the dense
+	 * node index of the context.
+	 */
+	protected void jumpRandomly() {
+		AntNode node = ctx.getRandomNode();
+
+		if (node == null)
+			return;
 
-		assert node != null : "jumpRandomly() got a null node to jump to!";
 		// System.err.printf( "Jumping randomly from node %s to node %s.%n",
 		// curNode.getTag(), node.getTag() );
 
@@ -187,6 +332,7 @@ public abstract class Ant {
 	 * method, contrary to {@link #jumpRandomly()} follow the graph topoly to
 	 * jump far away. Given a current node, the ant chooses randomly one of its
 	 * edges and jump to the opposite node. It does so a given number of times.
+	 * The walk is done on the {@link CompactAdjacency} of the graph.
 	 * 
 	 * @param howFar
 	 *            How many jumps to do.
@@ -195,21 +341,22 @@ public abstract class Ant {
 	 */
 	protected void jumpFarAway(int howFar) throws IllegalArgumentException {
 		int rand;
-		AntNode node = curNode;
+		CompactAdjacency adjacency = ctx.getInternalGraph().getAdjacency();
+		int node = curNode.getDenseIndex();
 
 		if (howFar < 1)
 			throw new IllegalArgumentException("jumps must be larger than 1");
 
-		if (curNode.getDegree() == 0)
+		if (adjacency.getDegree(node) == 0)
 			return;
 
 		for (int i = 0; i < howFar; ++i) {
-			rand = ctx.random().nextInt(node.getDegree());
-			node = (AntNode) node.getEdge(rand).getOpposite(node);
+			rand = random().nextInt(adjacency.getDegree(node));
+			node = adjacency.getNeighbor(node, rand);
 		}
 
 		ctx.incrJumps(this);
-		goTo(node);
+		goTo(adjacency.getNode(node));
 	}
 
 	/**
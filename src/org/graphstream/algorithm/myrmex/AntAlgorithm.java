@@ -20,6 +20,13 @@
  */
 package org.graphstream.algorithm.myrmex;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
 import org.graphstream.algorithm.DynamicAlgorithm;
 import org.graphstream.graph.Graph;
 import org.graphstream.stream.SinkAdapter;
@@ -34,9 +41,68 @@ import static org.graphstream.algorithm.Parameter.processParameters;
 
 public abstract class AntAlgorithm extends SinkAdapter implements
 		DynamicAlgorithm {
+	/**
+	 * A step run by the stepper thread.
+	 */
+	protected class StepTask implements Runnable {
+		/**
+		 * Set once the step has started, the sealed events submitted after
+		 * are left to the next step.
+		 */
+		protected volatile boolean started = false;
+
+		public void run() {
+			started = true;
+
+			try {
+				topology.applySealed();
+				context.step();
+				completedStep = context.getCurrentStep();
+			} catch (RuntimeException e) {
+				// The future of this step may be replaced before awaited.
+				e.printStackTrace();
+				throw e;
+			}
+		}
+	}
+
 	protected AntContext context;
 	protected ThreadProxyPipe proxy;
 
+	/**
+	 * Buffer of the events between the proxy and the internal graph.
+	 */
+	protected TopologyBuffer topology;
+
+	/**
+	 * Writer of the results to the registered graph, null if results are not
+	 * published.
+	 */
+	protected ResultPublisher publisher;
+
+	/**
+	 * Thread running the steps in asynchronous mode, null if steps are run by
+	 * the caller of {@link #compute()}.
+	 */
+	protected ExecutorService stepper;
+
+	/**
+	 * Last step submitted to the stepper and not awaited yet, and its task.
+	 */
+	protected Future<?> pendingStep;
+	protected StepTask pendingTask;
+
+	/**
+	 * Last completed step.
+	 */
+	protected volatile int completedStep;
+
+	/**
+	 * Set to true if snapshots have been enabled by the asynchronous mode
+	 * rather than by parameters, so they are disabled again with it.
+	 */
+	protected boolean snapshotsForced = false;
+
 	@DefineParameter(name = "graph", optional = false)
 	protected Graph registeredGraph;
 
@@ -62,6 +128,8 @@ public abstract class AntAlgorithm extends SinkAdapter implements
 	}
 
 	public void init(Parameter... params) {
+		awaitStep();
+
 		if (registeredGraph != null) {
 			registeredGraph.removeSink(this);
 		}
@@ -80,27 +148,219 @@ public abstract class AntAlgorithm extends SinkAdapter implements
 		registeredGraph.addAttributeSink(this);
 
 		if (proxy == null) {
+			topology = new TopologyBuffer(context, context.internalGraph,
+					context.getAntParams().getTopologyBufferSize());
 			proxy = new ThreadProxyPipe(registeredGraph);
-			proxy.addSink(context.internalGraph);
+			proxy.addSink(topology);
+		} else
+			topology.setCapacity(context.getAntParams()
+					.getTopologyBufferSize());
+
+		AntParams antParams = context.getAntParams();
+
+		if (antParams.isPublishResults()) {
+			publisher = new ResultPublisher(context, antParams
+					.getPublishPrefix(), antParams.getPublishThreshold());
+			topology.setIgnoredPrefix(antParams.getPublishPrefix());
+		} else {
+			publisher = null;
+			topology.setIgnoredPrefix(null);
+		}
+
+		context.setResultPublisher(publisher);
+
+		if (antParams.isAsyncSteps()) {
+			// The context can not be read while a step runs, readers use the
+			// snapshot of the last step.
+			if (!antParams.snapshots) {
+				antParams.snapshots = true;
+				snapshotsForced = true;
+			}
+
+			if (stepper == null)
+				stepper = Executors
+						.newSingleThreadExecutor(new ThreadFactory() {
+							public Thread newThread(Runnable r) {
+								Thread t = new Thread(r, "myrmex-step");
+								t.setDaemon(true);
+								return t;
+							}
+						});
+		} else {
+			if (stepper != null) {
+				stepper.shutdown();
+				stepper = null;
+			}
+
+			if (snapshotsForced) {
+				antParams.snapshots = false;
+				snapshotsForced = false;
+			}
 		}
 
 		context.init();
+		completedStep = context.getCurrentStep();
 	}
 
 	public void init(Graph graph) {
 		init(parameter("graph", graph));
 	}
 
+	public ResultPublisher getPublisher() {
+		return publisher;
+	}
+
+	/**
+	 * Last completed step. In asynchronous mode, this may be less than the
+	 * current step of the context while a step is running.
+	 * 
+	 * @return the step count of the last completed step
+	 */
+	public int getCompletedStep() {
+		return completedStep;
+	}
+
+	/**
+	 * Apply the graph events received since the last step, then run a step.
+	 * Events received during the step are collected, they are applied before
+	 * the next step. If results are published, their changes are then
+	 * written to the registered graph in one batch.
+	 * 
+	 * In asynchronous mode, this does not wait for the step, see
+	 * {@link #computeAsync()}.
+	 */
 	public void compute() {
+		if (stepper != null) {
+			computeAsync();
+			return;
+		}
+
 		proxy.pump();
+		topology.flush();
 		context.step();
+		completedStep = context.getCurrentStep();
 		proxy.pump();
+
+		if (publisher != null)
+			publisher.publish(registeredGraph);
+	}
+
+	/**
+	 * Receive the graph events, then run a step on the stepper thread without
+	 * waiting for it. Events received until the step starts are applied before
+	 * it, later events are collected for the next step while this one is
+	 * running.
+	 * 
+	 * If the previous step is still running, one step is queued behind it. If
+	 * a queued step has not started yet, no step is added : the events are
+	 * left to the queued step, whose future is returned. So each call runs a
+	 * step, except the calls made while a step is already waiting.
+	 * 
+	 * The context is modified by the stepper thread while a step runs, it
+	 * should not be read by other threads. Snapshots are enabled in this mode,
+	 * {@link AntContext#getSnapshot()} gives the counts and loads of the last
+	 * completed step without locking. Results published to the registered
+	 * graph are the ones of the last completed step, they are written by the
+	 * caller thread when no step is running. Steps of the context and its
+	 * listeners are run by the stepper thread.
+	 * 
+	 * If the algorithm is not in asynchronous mode, the step is run by the
+	 * caller and the returned future is already done.
+	 * 
+	 * @return the future of the step which will apply the received events
+	 */
+	public Future<?> computeAsync() {
+		if (stepper == null) {
+			compute();
+			return CompletableFuture.completedFuture(null);
+		}
+
+		proxy.pump();
+		topology.seal();
+
+		boolean running = pendingStep != null && !pendingStep.isDone();
+
+		// Events sealed above are applied when the queued step starts.
+		if (running && !pendingTask.started)
+			return pendingStep;
+
+		if (!running) {
+			awaitStep();
+
+			if (publisher != null)
+				publisher.publish(registeredGraph);
+		}
+
+		pendingTask = new StepTask();
+		pendingStep = stepper.submit(pendingTask);
+
+		return pendingStep;
+	}
+
+	/**
+	 * Run steps until a criterion is met. Graph events are applied once
+	 * before the first step, events received during the run are applied by
+	 * the next computation. Listeners of the context are called once, after
+	 * the last step, and results are published once.
+	 * 
+	 * This is run by the caller thread, after the end of the running step in
+	 * asynchronous mode.
+	 * 
+	 * @param maxSteps
+	 *            maximum number of steps to run
+	 * @param criterion
+	 *            checked after each step, null to run all the steps
+	 * @return the number of steps run
+	 * @see MetricConvergence
+	 */
+	public int run(int maxSteps, ConvergenceCriterion criterion) {
+		awaitStep();
+
+		proxy.pump();
+		topology.flush();
+
+		int steps = context.run(maxSteps, criterion);
+
+		completedStep = context.getCurrentStep();
+		proxy.pump();
+
+		if (publisher != null)
+			publisher.publish(registeredGraph);
+
+		return steps;
+	}
+
+	/**
+	 * Wait for the running and queued steps, if any.
+	 */
+	public void awaitStep() {
+		if (pendingStep != null) {
+			try {
+				pendingStep.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				// Reported by the step.
+			}
+
+			pendingStep = null;
+			pendingTask = null;
+		}
 	}
 
 	public void terminate() {
+		awaitStep();
+
+		if (stepper != null) {
+			stepper.shutdown();
+			stepper = null;
+		}
+
 		if (registeredGraph != null)
 			registeredGraph.removeSink(proxy);
 
-		proxy.removeSink(context.internalGraph);
+		proxy.removeSink(topology);
+		topology.flush();
+		context.terminate();
 	}
 }
@@ -20,11 +20,14 @@
  */
 package org.graphstream.algorithm.myrmex;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.graphstream.algorithm.myrmex.policy.ProportionalPopulationPolicy;
@@ -138,6 +141,20 @@ public class AntContext implements ElementSink {
 	 */
 	protected Random random;
 
+	/**
+	 * Stream of the ants chunk being stepped on the caller thread when steps
+	 * are sequential. Streams of parallel chunks are held by their
+	 * {@link StepBuffer}.
+	 */
+	protected SplittableRandom chunkRandom;
+
+	/**
+	 * Number of streams derived from the seed for the draws done outside of
+	 * the ants phase. This counter is the whole state of these draws, see
+	 * {@link #currentRandom()}.
+	 */
+	protected long defaultStreams;
+
 	/**
 	 * Number of jumps of the last step.
 	 */
@@ -153,6 +170,17 @@ public class AntContext implements ElementSink {
 	 */
 	protected int migrations;
 
+	/**
+	 * Migrations done between two steps, by the exchange of a shard, reported
+	 * by the next step.
+	 */
+	protected int pendingMigrations;
+
+	/**
+	 * True while {@link #step()} runs.
+	 */
+	protected boolean stepping = false;
+
 	/**
 	 * Current step.
 	 */
@@ -163,13 +191,103 @@ public class AntContext implements ElementSink {
 	 */
 	protected int[] jumpsPerColony;
 
+	/**
+	 * Number of nodes whose dominant colony changed during the current step.
+	 * Nodes may be committed by several workers.
+	 */
+	protected final AtomicInteger dominantChanges = new AtomicInteger();
+
+	/**
+	 * Loads dropped during the current step, per marker.
+	 */
+	protected float[] depositsPerColony = new float[1];
+
+	/**
+	 * Total loads per marker, maintained from the deposits and the
+	 * evaporation rather than summed over the graph.
+	 */
+	protected float[] totalLoads = new float[1];
+
 	/**
 	 * Ants count.
 	 */
 	protected int antCount;
 
+	/**
+	 * Path of the measures file, null if measures are not written.
+	 */
 	protected String outputMeasures;
 
+	/**
+	 * Writer of the measures, null if measures are not written.
+	 */
+	protected MeasuresWriter measuresWriter;
+
+	/**
+	 * Writer of the pheromone changes, null if changes are not written.
+	 */
+	protected PheromoneDeltaWriter deltaWriter;
+
+	/**
+	 * Publisher of the results, notified of the elements to publish. Null if
+	 * results are not published.
+	 */
+	protected ResultPublisher publisher;
+
+	/**
+	 * Last published snapshot, null if snapshots are disabled or no step has
+	 * been completed.
+	 */
+	protected volatile ContextSnapshot snapshot;
+
+	/**
+	 * Engine used to run steps in parallel, null if steps are sequential.
+	 */
+	protected ParallelStep parallelStep;
+
+	/**
+	 * Off-heap storage of the pheromones of edges and nodes. These are null
+	 * unless pheromones are stored off-heap.
+	 */
+	protected PheromoneMatrix edgePheromones;
+	protected PheromoneMatrix nodePheromones;
+
+	/**
+	 * Lazy pheromones on which something has been dropped during the current
+	 * step, and which have to be committed.
+	 */
+	protected ArrayList<Pheromones> droppedPheromones = new ArrayList<Pheromones>();
+
+	/**
+	 * Dense index of the nodes of the internal graph. The first
+	 * {@link #indexedNodeCount} cells are used, the index of a node in this
+	 * array is given by {@link AntNode#getDenseIndex()}.
+	 */
+	protected AntNode[] nodeIndex = new AntNode[16];
+	protected int indexedNodeCount;
+
+	/**
+	 * Edges which have to be stepped : edges on which something has been
+	 * dropped, or which still carry a load greater than epsilon. The index of
+	 * an edge in this array is its {@link AntEdge#activeIndex}.
+	 */
+	protected AntEdge[] activeEdges = new AntEdge[16];
+	protected int activeEdgeCount;
+
+	/**
+	 * Nodes which have to be stepped : nodes whose ant counts have changed,
+	 * or which carry pheromones as edges above. The index of a node in this
+	 * array is its {@link AntNode#activeIndex}.
+	 */
+	protected AntNode[] activeNodes = new AntNode[16];
+	protected int activeNodeCount;
+
+	/**
+	 * Powers of rho, the i-th cell is the persistence after i steps. Used by
+	 * lazy pheromones.
+	 */
+	protected volatile float[] persistences = new float[] { 1 };
+
 	/**
 	 * Default constructor.
 	 */
@@ -212,6 +330,16 @@ public class AntContext implements ElementSink {
 		this.params = params;
 	}
 
+	/**
+	 * Set the publisher notified of the elements whose results may change.
+	 * 
+	 * @param publisher
+	 *            the publisher, null if results are not published
+	 */
+	public void setResultPublisher(ResultPublisher publisher) {
+		this.publisher = publisher;
+	}
+
 	/**
 	 * Get the policy used for the ants population.
 	 * 
@@ -250,13 +378,94 @@ public class AntContext implements ElementSink {
 		return step;
 	}
 
+	/**
+	 * Number of removed ants kept by the colonies to be reused.
+	 * 
+	 * @return pooled ants count
+	 */
+	public int getPooledAntCount() {
+		int count = 0;
+
+		for (Colony colony : eachColony())
+			count += colony.getPoolSize();
+
+		return count;
+	}
+
+	/**
+	 * Number of jumps during the last step.
+	 * 
+	 * @return jumps count
+	 */
+	public int getJumps() {
+		return jumps;
+	}
+
+	/**
+	 * Number of jumps of the ants of a colony during the last step.
+	 * 
+	 * @param colony
+	 *            the colony
+	 * @return jumps count of the colony
+	 */
+	public int getJumps(Colony colony) {
+		int index = colony.getIndex();
+		return index < jumpsPerColony.length ? jumpsPerColony[index] : 0;
+	}
+
+	/**
+	 * Number of over populated nodes encountered during the last step.
+	 * 
+	 * @return surpopulation count
+	 */
+	public int getSurpop() {
+		return surpop;
+	}
+
+	/**
+	 * Number of migrations during the last step, including the ones done
+	 * between the previous step and this one.
+	 * 
+	 * @return migrations count
+	 */
+	public int getMigrations() {
+		return migrations;
+	}
+
 	/**
 	 * Get the nodes count in the internal graph.
 	 * 
 	 * @return nodes count
 	 */
 	public int getNodeCount() {
-		return internalGraph.getNodeCount();
+		return indexedNodeCount;
+	}
+
+	/**
+	 * Get the i-th node of the internal graph. Nodes are densely indexed,
+	 * indices are between 0 and {@link #getNodeCount()} and the index of a
+	 * node may change when another node is removed.
+	 * 
+	 * @param i
+	 *            index of the node
+	 * @return the node
+	 * @complexity O(1)
+	 */
+	public AntNode getNode(int i) {
+		return nodeIndex[i];
+	}
+
+	/**
+	 * Pick a node uniformly at random.
+	 * 
+	 * @return a random node, or null if the graph is empty
+	 * @complexity O(1)
+	 */
+	public AntNode getRandomNode() {
+		if (indexedNodeCount == 0)
+			return null;
+
+		return nodeIndex[currentRandom().nextInt(indexedNodeCount)];
 	}
 
 	/**
@@ -293,6 +502,73 @@ public class AntContext implements ElementSink {
 		return random;
 	}
 
+	/**
+	 * Random stream of the current thread. While ants are stepped, this is the
+	 * stream of the ants chunk being run, so draws never contend and do not
+	 * depend on the number of workers. Otherwise, this is a new stream
+	 * derived from the seed and the number of streams derived so far, so
+	 * checkpoints can restore these draws by saving a counter.
+	 * 
+	 * @return random stream
+	 */
+	public SplittableRandom currentRandom() {
+		StepBuffer buffer = currentStepBuffer();
+
+		if (buffer != null)
+			return buffer.random;
+
+		if (chunkRandom != null)
+			return chunkRandom;
+
+		return new SplittableRandom(mix(mix(params.randomSeed) + GOLDEN_GAMMA
+				* ++defaultStreams));
+	}
+
+	/**
+	 * Create the stream of a chunk of ants for the current step. The stream
+	 * only depends on the seed, the step, the colony and the first ant of the
+	 * chunk, so sequential and parallel runs draw the same numbers.
+	 * 
+	 * @param colony
+	 *            index of the colony
+	 * @param from
+	 *            index of the first ant of the chunk in the colony
+	 * @return a new stream
+	 */
+	public SplittableRandom newChunkRandom(int colony, int from) {
+		long seed = mix(params.randomSeed + GOLDEN_GAMMA * (step + 1));
+		seed = mix(seed + GOLDEN_GAMMA * (colony + 1));
+		seed = mix(seed + GOLDEN_GAMMA * (from + 1));
+
+		return new SplittableRandom(seed);
+	}
+
+	/**
+	 * Set the stream of the ants chunk run by the current thread.
+	 * 
+	 * @param random
+	 *            stream of the chunk, null when the chunk is done
+	 */
+	void useChunkRandom(SplittableRandom random) {
+		StepBuffer buffer = currentStepBuffer();
+
+		if (buffer != null)
+			buffer.random = random;
+		else
+			chunkRandom = random;
+	}
+
+	protected static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * Mixing function of SplitMix64.
+	 */
+	protected static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
 	/**
 	 * Get the source id used for sink operations.
 	 * 
@@ -396,7 +672,41 @@ public class AntContext implements ElementSink {
 	public void init() {
 		colonies.clear();
 
+		if (parallelStep != null)
+			parallelStep.shutdown();
+
+		parallelStep = null;
+
+		if (params.getParallelism() > 1)
+			parallelStep = new ParallelStep(this, params.getParallelism(),
+					params.getChunkSize());
+
+		edgePheromones = null;
+		nodePheromones = null;
+		droppedPheromones.clear();
+		clearActive();
+		persistences = new float[] { 1 };
+		step = 0;
+		pendingMigrations = 0;
+		dominantChanges.set(0);
+		depositsPerColony = new float[1];
+		totalLoads = new float[1];
+
+		closeMeasures();
+
+		if (params.isMeasuresOutput())
+			openMeasures();
+
+		closeDelta();
+
+		if (params.isDeltaOutput())
+			openDelta();
+
+		snapshot = null;
+
 		random = new Random(params.randomSeed);
+		defaultStreams = 0;
+		chunkRandom = null;
 		populationPolicy = getDefaultPopulationPolicy();
 		populationPolicy.init(this);
 
@@ -410,28 +720,603 @@ public class AntContext implements ElementSink {
 			ae.reset();
 	}
 
+	/**
+	 * Run a step : commit colonies, step ants, evaporate pheromones, then step
+	 * edges and nodes. Only active edges and nodes are stepped, so the cost of
+	 * these phases depends on the activity rather than on the graph size. The
+	 * step and each of its phases are reported as
+	 * {@link StepEvent} and {@link StepPhaseEvent} to the flight recorder.
+	 */
 	public void step() {
+		step(true);
+	}
+
+	/**
+	 * Run steps until a criterion is met. Steps are run back to back, and
+	 * listeners are only called once, after the last step.
+	 * 
+	 * @param maxSteps
+	 *            maximum number of steps to run
+	 * @param criterion
+	 *            checked after each step, the run stops as soon as it is met;
+	 *            if null, all the steps are run
+	 * @return the number of steps run
+	 */
+	public int run(int maxSteps, ConvergenceCriterion criterion) {
+		int steps = 0;
+
+		if (criterion != null)
+			criterion.reset(this);
+
+		while (steps < maxSteps) {
+			step(false);
+			steps++;
+
+			if (criterion != null) {
+				boolean converged;
+
+				lock();
+
+				try {
+					converged = criterion.isConverged(this);
+				} finally {
+					unlock();
+				}
+
+				if (converged)
+					break;
+			}
+		}
+
+		if (steps > 0)
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).step(this);
+
+		return steps;
+	}
+
+	/**
+	 * Run a step.
+	 * 
+	 * @param notify
+	 *            if true, listeners are called at the end of the step
+	 */
+	protected void step(boolean notify) {
 		lock();
 
-		for (Colony colony : eachColony())
-			colony.commit();
+		try {
+			StepEvent stepEvent = new StepEvent();
+			stepEvent.begin();
+
+			stepping = true;
+			jumps = 0;
+			surpop = 0;
+			migrations = pendingMigrations;
+			pendingMigrations = 0;
+			Arrays.fill(jumpsPerColony, 0);
+			Arrays.fill(depositsPerColony, 0);
+			dominantChanges.set(0);
+
+			// Events report the step being run, which is also the current
+			// step once it is done.
+			int current = step + 1;
+			StepPhaseEvent phase = StepPhaseEvent.start(current,
+					StepPhaseEvent.COLONIES);
+
+			for (Colony colony : eachColony())
+				colony.commit();
+
+			phase = phase.next(StepPhaseEvent.ANTS);
+
+			if (parallelStep != null)
+				parallelStep.stepAnts();
+			else
+				for (Colony colony : eachColony())
+					colony.step();
+
+			phase = phase.next(StepPhaseEvent.PHEROMONES);
+
+			// Loads evaporate from here.
+			step++;
+
+			if (edgePheromones != null)
+				edgePheromones.step(params.rho);
+
+			if (nodePheromones != null)
+				nodePheromones.step(params.rho);
+
+			if (params.isLazyEvaporation()) {
+				for (int i = 0; i < droppedPheromones.size(); i++)
+					droppedPheromones.get(i).commit();
+
+				droppedPheromones.clear();
+			}
+
+			updateTotalLoads();
+
+			phase = phase.next(StepPhaseEvent.EDGES);
+
+			if (params.isLazyEvaporation()
+					&& params.getPheromoneStorage() ==
+						AntParams.PheromoneStorage.HEAP) {
+				// Loads evaporate on read, edges have been committed above.
+				// Matrix rows are not lazy, they still have pheromone objects
+				// to commit when stepped.
+				while (activeEdgeCount > 0)
+					deactivate(activeEdges[activeEdgeCount - 1]);
+			} else {
+				if (parallelStep != null)
+					parallelStep.stepEdges();
+				else
+					for (int i = 0; i < activeEdgeCount; i++)
+						activeEdges[i].step(this);
+
+				retireEdges();
+			}
+
+			phase = phase.next(StepPhaseEvent.NODES);
+
+			if (parallelStep != null)
+				parallelStep.stepNodes();
+			else
+				for (int i = 0; i < activeNodeCount; i++)
+					activeNodes[i].step(this);
+
+			retireNodes();
+
+			phase = phase.next(StepPhaseEvent.POPULATION);
+
+			populationPolicy.step();
+			// System.out.printf("%d ants%n",populationPolicy.getAntCount());
+
+			if (measuresWriter != null) {
+				phase = phase.next(StepPhaseEvent.MEASURES);
+
+				try {
+					measuresWriter.sample(this);
+				} catch (IOException e) {
+					e.printStackTrace();
+					closeMeasures();
+				}
+			}
+
+			if (deltaWriter != null) {
+				phase = phase.next(StepPhaseEvent.DELTA);
+
+				try {
+					deltaWriter.sample(this);
+				} catch (IOException e) {
+					e.printStackTrace();
+					closeDelta();
+				}
+			}
+
+			if (params.isSnapshots()) {
+				phase = phase.next(StepPhaseEvent.SNAPSHOT);
+				snapshot = new ContextSnapshot(this, snapshot);
+			}
+
+			phase.commit();
+			stepEvent.end();
+
+			if (stepEvent.shouldCommit()) {
+				stepEvent.step = current;
+				stepEvent.ants = populationPolicy.getAntCount();
+				stepEvent.nodes = getNodeCount();
+				stepEvent.edges = internalGraph.getEdgeCount();
+				stepEvent.colonies = getColonyCount();
+				stepEvent.jumps = jumps;
+				stepEvent.surpop = surpop;
+				stepEvent.migrations = migrations;
+				stepEvent.pooledAnts = getPooledAntCount();
+				stepEvent.commit();
+			}
+		} finally {
+			// Released even if the step fails, so the context stays usable.
+			stepping = false;
+			unlock();
+		}
 
-		for (Colony colony : eachColony())
-			colony.step();
+		if (notify)
+			for (int i = 0; i < listeners.size(); i++)
+				listeners.get(i).step(this);
+	}
 
-		for (AntEdge e : internalGraph.<AntEdge> getEachEdge())
-			e.step(this);
+	/**
+	 * Record a load dropped during the current step. This is called by the
+	 * ants, or by the step buffers when they are merged.
+	 * 
+	 * @param marker
+	 *            marker of the load
+	 * @param load
+	 *            the dropped load
+	 */
+	protected void deposited(int marker, float load) {
+		if (marker >= depositsPerColony.length)
+			depositsPerColony = Arrays.copyOf(depositsPerColony, marker + 1);
 
-		for (AntNode n : internalGraph.<AntNode> getEachNode())
-			n.step(this);
+		depositsPerColony[marker] += load;
+	}
 
-		populationPolicy.step();
-		// System.out.printf("%d ants%n",populationPolicy.getAntCount());
+	/**
+	 * Total load of a marker over the graph, maintained from the deposits of
+	 * the ants and the evaporation rather than summed over the elements. Loads
+	 * cleared by pruning or lost with removed elements are not accounted.
+	 * 
+	 * @param marker
+	 *            the marker
+	 * @return the total load at the end of the last step
+	 */
+	public float getTotalLoad(int marker) {
+		return marker >= 0 && marker < totalLoads.length ? totalLoads[marker]
+				: 0;
+	}
+
+	/**
+	 * Called by nodes when their dominant colony changes.
+	 */
+	protected void dominantChanged() {
+		dominantChanges.incrementAndGet();
+	}
+
+	/**
+	 * Evaporate the total loads and add the deposits of the step.
+	 */
+	protected void updateTotalLoads() {
+		if (totalLoads.length < depositsPerColony.length)
+			totalLoads = Arrays.copyOf(totalLoads, depositsPerColony.length);
+
+		for (int m = 0; m < totalLoads.length; m++)
+			totalLoads[m] = totalLoads[m] * params.rho
+					+ (m < depositsPerColony.length ? depositsPerColony[m] : 0);
+	}
+
+	/**
+	 * Number of nodes whose dominant colony, the colony with the most ants on
+	 * the node, changed during the last step.
+	 * 
+	 * @return dominant colony changes count
+	 */
+	public int getDominantChanges() {
+		return dominantChanges.get();
+	}
+
+	/**
+	 * Snapshot of the ants counts and pheromone loads at the end of the last
+	 * step. This does not lock the context, and can be called while a step is
+	 * running, the snapshot of the previous step being returned.
+	 * 
+	 * @return the last snapshot, or null if snapshots are disabled in
+	 *         parameters or if no step has been completed
+	 * @see AntParams#isSnapshots()
+	 */
+	public ContextSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Write a checkpoint of this context to the file defined in parameters.
+	 * The checkpoint is captured now and written by a background thread.
+	 * 
+	 * @return the writer, to wait for the end of the writing
+	 * @throws IOException
+	 *             if the file can not be created
+	 * @see Checkpoint
+	 */
+	public AsyncWriter<Checkpoint> checkpoint() throws IOException {
+		return Checkpoint.save(this, params.getCheckpointPath());
+	}
+
+	/**
+	 * Restore the checkpoint written in the file defined in parameters. The
+	 * context has to be initialized and its graph fed.
+	 * 
+	 * @throws IOException
+	 *             if the checkpoint can not be read
+	 * @see Checkpoint
+	 */
+	public void restore() throws IOException {
+		Checkpoint.restore(this, params.getCheckpointPath());
+	}
+
+	/**
+	 * Release the resources used by the context.
+	 */
+	public void terminate() {
+		if (parallelStep != null)
+			parallelStep.shutdown();
+
+		parallelStep = null;
+
+		closeMeasures();
+		closeDelta();
+	}
+
+	/**
+	 * Start writing measures to the file defined in parameters.
+	 */
+	protected void openMeasures() {
+		try {
+			measuresWriter = MeasuresWriter.open(params);
+			outputMeasures = params.getOutputMeasuresPath();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write the pending measures and close the measures file.
+	 */
+	protected void closeMeasures() {
+		if (measuresWriter != null) {
+			try {
+				measuresWriter.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+			measuresWriter = null;
+			outputMeasures = null;
+		}
+	}
+
+	/**
+	 * Start writing pheromone changes to the file defined in parameters.
+	 */
+	protected void openDelta() {
+		try {
+			deltaWriter = PheromoneDeltaWriter.open(params);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write the pending pheromone changes and close their file.
+	 */
+	protected void closeDelta() {
+		if (deltaWriter != null) {
+			try {
+				deltaWriter.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+			deltaWriter = null;
+		}
+	}
+
+	/**
+	 * Create the pheromones of a new edge, according to the pheromone storage
+	 * defined in parameters.
+	 * 
+	 * @return new pheromones
+	 */
+	public Pheromones newEdgePheromones() {
+		if (params.getPheromoneStorage() == AntParams.PheromoneStorage.OFF_HEAP) {
+			if (edgePheromones == null)
+				edgePheromones = new PheromoneMatrix(getColonyCount(),
+						internalGraph.getEdgeCount(), params
+								.getPheromoneKernels());
+
+			return edgePheromones.newPheromones();
+		}
+
+		if (params.isLazyEvaporation())
+			return new LazyPheromones(this);
+
+		return new Pheromones(this);
+	}
+
+	/**
+	 * Create the pheromones of a new node, according to the pheromone storage
+	 * defined in parameters.
+	 * 
+	 * @return new pheromones
+	 */
+	public Pheromones newNodePheromones() {
+		if (params.getPheromoneStorage() == AntParams.PheromoneStorage.OFF_HEAP) {
+			if (nodePheromones == null)
+				nodePheromones = new PheromoneMatrix(getColonyCount(),
+						internalGraph.getNodeCount(), params
+								.getPheromoneKernels());
+
+			return nodePheromones.newPheromones();
+		}
+
+		if (params.isLazyEvaporation())
+			return new LazyPheromones(this);
+
+		return new Pheromones(this);
+	}
+
+	/**
+	 * Persistence of pheromones after some steps, that is rho to the power of
+	 * the steps count.
+	 * 
+	 * @param steps
+	 *            number of steps
+	 * @return the persistence factor
+	 */
+	public float persistence(int steps) {
+		float[] p = persistences;
+
+		if (steps < p.length)
+			return p[steps];
+
+		if (steps > 4096)
+			return (float) Math.pow(params.rho, steps);
+
+		// Powers are computed as the eager evaporation does, one step after
+		// the other, to get the same rounding.
+		float[] np = Arrays.copyOf(p, Math.max(steps + 1, p.length * 2));
+
+		for (int i = p.length; i < np.length; i++)
+			np[i] = np[i - 1] * params.rho;
+
+		persistences = np;
+		return np[steps];
+	}
+
+	/**
+	 * Called by lazy pheromones the first time something is dropped on them
+	 * during a step.
+	 * 
+	 * @param pheromones
+	 *            pheromones to commit at the end of the step
+	 */
+	void pheromonesDropped(Pheromones pheromones) {
+		droppedPheromones.add(pheromones);
+	}
+
+	/**
+	 * Mark an element as active, so it is stepped at the end of the current
+	 * step. Elements are activated by {@link Pheromonable#ensurePheromones()},
+	 * this only has to be called when pheromones kept since a previous step
+	 * are changed.
+	 * 
+	 * @param element
+	 *            an edge or a node
+	 */
+	public void activate(Pheromonable element) {
+		if (element instanceof AntEdge)
+			activate((AntEdge) element);
+		else if (element instanceof AntNode)
+			activate((AntNode) element);
+	}
+
+	protected void activate(AntEdge e) {
+		if (e.activeIndex < 0) {
+			if (activeEdgeCount == activeEdges.length)
+				activeEdges = Arrays.copyOf(activeEdges, activeEdgeCount * 2);
+
+			e.activeIndex = activeEdgeCount;
+			activeEdges[activeEdgeCount++] = e;
+
+			if (deltaWriter != null)
+				deltaWriter.touch(e);
 
-		unlock();
+			if (publisher != null)
+				publisher.touch(e);
+		}
+	}
+
+	protected void activate(AntNode n) {
+		if (n.activeIndex < 0) {
+			if (activeNodeCount == activeNodes.length)
+				activeNodes = Arrays.copyOf(activeNodes, activeNodeCount * 2);
 
-		for (int i = 0; i < listeners.size(); i++)
-			listeners.get(i).step(this);
+			n.activeIndex = activeNodeCount;
+			activeNodes[activeNodeCount++] = n;
+
+			if (deltaWriter != null)
+				deltaWriter.touch(n);
+
+			if (publisher != null)
+				publisher.touch(n);
+		}
+	}
+
+	protected void deactivate(AntEdge e) {
+		int i = e.activeIndex;
+
+		if (i >= 0) {
+			// Swap-remove, the last edge takes the index.
+			AntEdge last = activeEdges[--activeEdgeCount];
+			activeEdges[i] = last;
+			last.activeIndex = i;
+			activeEdges[activeEdgeCount] = null;
+			e.activeIndex = -1;
+		}
+	}
+
+	protected void deactivate(AntNode n) {
+		int i = n.activeIndex;
+
+		if (i >= 0) {
+			// Swap-remove, the last node takes the index.
+			AntNode last = activeNodes[--activeNodeCount];
+			activeNodes[i] = last;
+			last.activeIndex = i;
+			activeNodes[activeNodeCount] = null;
+			n.activeIndex = -1;
+		}
+	}
+
+	/**
+	 * Deactivate the stepped edges whose pheromones have evaporated. Walking
+	 * backward, a swap-removed edge is replaced by an edge already checked.
+	 * Edges whose pheromones are fully evaporated go back to the shared
+	 * {@link Pheromones#EMPTY}.
+	 */
+	protected void retireEdges() {
+		float epsilon = params.getEpsilon();
+
+		for (int i = activeEdgeCount - 1; i >= 0; i--) {
+			AntEdge e = activeEdges[i];
+
+			if (e.getPheromones().prune(epsilon)) {
+				if (e.pheromones != null && e.pheromones.isDiscardable())
+					e.pheromones = null;
+
+				deactivate(e);
+			}
+		}
+	}
+
+	/**
+	 * Deactivate the stepped nodes which have been committed and whose
+	 * pheromones have evaporated, as edges above.
+	 */
+	protected void retireNodes() {
+		float epsilon = params.getEpsilon();
+
+		for (int i = activeNodeCount - 1; i >= 0; i--) {
+			AntNode n = activeNodes[i];
+
+			if (n.getPheromones().prune(epsilon)) {
+				if (n.pheromones != null && n.pheromones.isDiscardable())
+					n.pheromones = null;
+
+				deactivate(n);
+			}
+		}
+	}
+
+	protected void clearActive() {
+		for (int i = 0; i < activeEdgeCount; i++) {
+			activeEdges[i].activeIndex = -1;
+			activeEdges[i] = null;
+		}
+
+		for (int i = 0; i < activeNodeCount; i++) {
+			activeNodes[i].activeIndex = -1;
+			activeNodes[i] = null;
+		}
+
+		activeEdgeCount = 0;
+		activeNodeCount = 0;
+	}
+
+	/**
+	 * Release pheromones which are not used anymore by an element.
+	 * 
+	 * @param pheromones
+	 *            pheromones to release, can be null
+	 */
+	public void releasePheromones(Pheromones pheromones) {
+		if (pheromones instanceof PheromoneMatrix.MatrixPheromones)
+			((PheromoneMatrix.MatrixPheromones) pheromones).release();
+	}
+
+	/**
+	 * Buffer in which the side effects of ants have to be recorded. This is
+	 * null unless ants are stepped in parallel.
+	 * 
+	 * @return the buffer of the current thread, or null
+	 */
+	StepBuffer currentStepBuffer() {
+		return parallelStep == null ? null : parallelStep.currentBuffer();
 	}
 
 	/**
@@ -441,6 +1326,13 @@ public class AntContext implements ElementSink {
 	 *            the ant which has jumped
 	 */
 	public void incrJumps(Ant ant) {
+		StepBuffer buffer = currentStepBuffer();
+
+		if (buffer != null) {
+			buffer.incrJumps(ant.getColony().getIndex());
+			return;
+		}
+
 		jumps++;
 
 		Colony color = ant.getColony();
@@ -456,14 +1348,27 @@ public class AntContext implements ElementSink {
 	 * Increments surpopulation count.
 	 */
 	public void incrSurpop() {
-		surpop++;
+		StepBuffer buffer = currentStepBuffer();
+
+		if (buffer != null)
+			buffer.incrSurpop();
+		else
+			surpop++;
 	}
 
 	/**
-	 * Increments migrations count.
+	 * Increments migrations count. Migrations done outside of a step are
+	 * counted by the next step.
 	 */
 	public void incrMigrations() {
-		migrations++;
+		StepBuffer buffer = currentStepBuffer();
+
+		if (buffer != null)
+			buffer.incrMigrations();
+		else if (stepping)
+			migrations++;
+		else
+			pendingMigrations++;
 	}
 
 	/**
@@ -471,35 +1376,115 @@ public class AntContext implements ElementSink {
 	 */
 	public void edgeAdded(String sourceId, long timeId, String edgeId,
 			String fromNodeId, String toNodeId, boolean directed) {
+		internalGraph.invalidateAdjacency();
 
+		AntEdge e = internalGraph.getEdge(edgeId);
+
+		if (e != null) {
+			e.<AntNode> getNode0().clearTransitions();
+			e.<AntNode> getNode1().clearTransitions();
+		}
 	}
 
 	/**
 	 * @see org.graphstream.stream.ElementSink
 	 */
 	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		// The adjacency is invalidated by the graph, once the edge is removed.
+		AntEdge e = internalGraph.getEdge(edgeId);
+
+		if (e != null) {
+			e.<AntNode> getNode0().clearTransitions();
+			e.<AntNode> getNode1().clearTransitions();
+			deactivate(e);
+			releasePheromones(e.pheromones);
 
+			if (deltaWriter != null)
+				deltaWriter.forget(e);
+
+			if (publisher != null)
+				publisher.forget(e);
+		}
 	}
 
 	/**
 	 * @see org.graphstream.stream.ElementSink
 	 */
 	public void graphCleared(String sourceId, long timeId) {
+		clearActive();
+
+		if (deltaWriter != null)
+			deltaWriter.clear();
 
+		if (publisher != null)
+			publisher.clear();
+
+		for (int i = 0; i < indexedNodeCount; i++) {
+			nodeIndex[i].denseIndex = -1;
+			nodeIndex[i] = null;
+		}
+
+		indexedNodeCount = 0;
 	}
 
 	/**
 	 * @see org.graphstream.stream.ElementSink
 	 */
 	public void nodeAdded(String sourceId, long timeId, String nodeId) {
-		populationPolicy.nodeAdded((AntNode) internalGraph.getNode(nodeId));
+		internalGraph.invalidateAdjacency();
+
+		AntNode n = internalGraph.getNode(nodeId);
+
+		if (indexedNodeCount == nodeIndex.length)
+			nodeIndex = Arrays.copyOf(nodeIndex, indexedNodeCount * 2);
+
+		n.denseIndex = indexedNodeCount;
+		nodeIndex[indexedNodeCount++] = n;
+
+		populationPolicy.nodeAdded(n);
 	}
 
 	/**
 	 * @see org.graphstream.stream.ElementSink
 	 */
 	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
-		populationPolicy.nodeRemoved((AntNode) internalGraph.getNode(nodeId));
+		// Dense indices change below, so the adjacency is dropped now. The
+		// graph drops it again once the node is removed, in case it has been
+		// rebuilt meanwhile.
+		internalGraph.invalidateAdjacency();
+
+		AntNode n = internalGraph.getNode(nodeId);
+
+		if (n.denseIndex >= 0) {
+			// Swap-remove, the last node takes the index.
+			AntNode last = nodeIndex[--indexedNodeCount];
+			nodeIndex[n.denseIndex] = last;
+			last.denseIndex = n.denseIndex;
+			nodeIndex[indexedNodeCount] = null;
+			n.denseIndex = -1;
+		}
+
+		populationPolicy.nodeRemoved(n);
+
+		if (deltaWriter != null)
+			deltaWriter.forget(n);
+
+		if (publisher != null)
+			publisher.forget(n);
+
+		// Ants left on the node by the policy are relocated, or removed if
+		// there is no node left.
+		for (Ant ant : n.getResidents()) {
+			AntNode to = getRandomNode();
+
+			if (to != null)
+				ant.goTo(to);
+			else
+				ant.getColony().removeAnt(ant);
+		}
+
+		deactivate(n);
+		releasePheromones(n.pheromones);
 	}
 
 	/**
@@ -38,7 +38,21 @@ public class AntEdge extends AbstractEdge implements Pheromonable {
 	 */
 	protected float value;
 
+	/**
+	 * Value of the edge to the power of {@link #weightExponent}, as perceived
+	 * by ants. The exponent is written last, so a thread reading the exponent
+	 * first always reads the matching power.
+	 */
+	protected double weightPower;
+	protected volatile float weightExponent = Float.NaN;
+
 	protected AntContext ctx;
+
+	/**
+	 * Index of this edge in the active edges of the context, -1 if the edge
+	 * is not active.
+	 */
+	protected int activeIndex = -1;
 	
 	/**
 	 * Constructor for an edge.
@@ -71,12 +85,13 @@ public class AntEdge extends AbstractEdge implements Pheromonable {
 		reset();
 	}
 
+	/**
+	 * Forget the pheromones of the edge. Pheromones are created again on the
+	 * next drop.
+	 */
 	public void reset() {
-		switch(ctx.getAntParams().getDropPheromoneOn()) {
-		case EDGES:
-		case NODES_AND_EDGES:
-			pheromones = new Pheromones(ctx);
-		}
+		ctx.releasePheromones(pheromones);
+		pheromones = null;
 	}
 	
 	/**
@@ -107,9 +122,37 @@ public class AntEdge extends AbstractEdge implements Pheromonable {
 	 */
 	public void setValue(float value) {
 		this.value = value;
+		this.weightExponent = Float.NaN;
+	}
+
+	/**
+	 * Get the weight of the edge to the power of the given exponent. The power
+	 * is cached until the weight or the exponent change.
+	 * 
+	 * @param exponent
+	 *            the exponent, usually beta
+	 * @return weight to the power of the exponent
+	 */
+	public double getWeightPower(float exponent) {
+		if (weightExponent != exponent) {
+			weightPower = TransitionTable.pow(value, exponent);
+			weightExponent = exponent;
+		}
+
+		return weightPower;
 	}
 	
 	public Pheromones getPheromones() {
 		return pheromones == null ? Pheromones.EMPTY : pheromones;
 	}
+
+	public Pheromones ensurePheromones() {
+		if (pheromones == null)
+			pheromones = ctx.newEdgePheromones();
+
+		// Something is about to be dropped, step the element.
+		ctx.activate(this);
+
+		return pheromones;
+	}
 }
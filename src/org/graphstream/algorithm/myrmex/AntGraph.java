@@ -24,6 +24,8 @@ import org.graphstream.graph.Graph;
 import org.graphstream.graph.Node;
 import org.graphstream.graph.NodeFactory;
 import org.graphstream.graph.EdgeFactory;
+import org.graphstream.graph.implementations.AbstractEdge;
+import org.graphstream.graph.implementations.AbstractNode;
 import org.graphstream.graph.implementations.AdjacencyListGraph;
 
 /**
@@ -38,6 +40,11 @@ public class AntGraph extends AdjacencyListGraph {
 	 */
 	protected AntContext ctx;
 
+	/**
+	 * Compact view of the topology, null if it has to be rebuilt.
+	 */
+	protected volatile CompactAdjacency adjacency;
+
 	/**
 	 * Constructor for the graph.
 	 * 
@@ -63,4 +70,55 @@ public class AntGraph extends AdjacencyListGraph {
 			}
 		});
 	}
+
+	/**
+	 * Compact view of the current topology. The view is rebuilt lazily, the
+	 * first time it is requested after a change of the topology, so it is
+	 * built at most once per step.
+	 * 
+	 * @return the adjacency of the graph
+	 */
+	public CompactAdjacency getAdjacency() {
+		CompactAdjacency a = adjacency;
+
+		if (a == null) {
+			synchronized (this) {
+				a = adjacency;
+
+				if (a == null) {
+					a = new CompactAdjacency(ctx, this);
+					adjacency = a;
+				}
+			}
+		}
+
+		return a;
+	}
+
+	/**
+	 * Drop the compact view of the topology, called by the context when
+	 * nodes or edges are added, and by the graph once they are removed.
+	 */
+	public void invalidateAdjacency() {
+		adjacency = null;
+	}
+
+	/**
+	 * Removal events are sent to the context before the element is removed,
+	 * so the view is dropped here, once it is.
+	 */
+	protected void removeNodeCallback(AbstractNode node) {
+		super.removeNodeCallback(node);
+		invalidateAdjacency();
+	}
+
+	protected void removeEdgeCallback(AbstractEdge edge) {
+		super.removeEdgeCallback(edge);
+		invalidateAdjacency();
+	}
+
+	protected void clearCallback() {
+		super.clearCallback();
+		invalidateAdjacency();
+	}
 }
@@ -21,6 +21,8 @@
 package org.graphstream.algorithm.myrmex;
 
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.graphstream.graph.implementations.AdjacencyListNode;
 
@@ -60,12 +62,44 @@ public class AntNode extends AdjacencyListNode implements Pheromonable {
 	 */
 	protected boolean needCommit = false;
 
+	/**
+	 * Index of the colony with the most ants on this node after the last
+	 * commit, -1 if there is no ant.
+	 */
+	protected int dominant = -1;
+
 	/**
 	 * Allows to attribute a value to this node.
 	 */
 	protected float value;
 
 	protected AntContext ctx;
+
+	/**
+	 * Transition tables of the colonies, indexed by colony. Tables are
+	 * immutable, the cache may be updated concurrently by several ants.
+	 */
+	protected TransitionTable[] transitions;
+
+	/**
+	 * Index of this node in the dense node index of the context, -1 if the
+	 * node is not indexed.
+	 */
+	protected int denseIndex = -1;
+
+	/**
+	 * Index of this node in the active nodes of the context, -1 if the node
+	 * is not active.
+	 */
+	protected int activeIndex = -1;
+
+	/**
+	 * Head of the intrusive list of the ants registered on this node, linked
+	 * by {@link Ant#nextResident}. Registrations are done sequentially, at the
+	 * end of the ants phase when ants are stepped in parallel.
+	 */
+	protected Ant residents;
+	protected int residentCount;
 	
 	/**
 	 * Constructor of an AntCo2Node.
@@ -88,14 +122,33 @@ public class AntNode extends AdjacencyListNode implements Pheromonable {
 	public void reset() {
 		antCountsPerColony = new int[ctx.getColonyCount()];
 		antCountsPerColonyTmp = new int[ctx.getColonyCount()];
-		
-		switch(ctx.getAntParams().getDropPheromoneOn()) {
-		case NODES:
-		case NODES_AND_EDGES:
-			pheromones = new Pheromones(ctx);
+		dominant = -1;
+
+		// Residents belong to discarded colonies, unlink them.
+		while (residents != null) {
+			Ant ant = residents;
+			residents = ant.nextResident;
+			ant.prevResident = null;
+			ant.nextResident = null;
 		}
+
+		residentCount = 0;
+
+		// Pheromones are created again on the next drop.
+		ctx.releasePheromones(pheromones);
+		pheromones = null;
 	}
 	
+	/**
+	 * Index of this node in the context.
+	 * 
+	 * @return the dense index of the node
+	 * @see AntContext#getNode(int)
+	 */
+	public int getDenseIndex() {
+		return denseIndex;
+	}
+
 	/**
 	 * Attribute a new value to the node.
 	 * 
@@ -139,10 +192,64 @@ public class AntNode extends AdjacencyListNode implements Pheromonable {
 		return antCountsPerColony[index];
 	}
 	
+	/**
+	 * Index of the colony with the most ants on this node during the last
+	 * step.
+	 * 
+	 * @return the dominant colony index, -1 if there is no ant
+	 */
+	public int getDominantColonyIndex() {
+		return dominant;
+	}
+
 	public Pheromones getPheromones() {
 		return pheromones == null ? Pheromones.EMPTY : pheromones;
 	}
 
+	public Pheromones ensurePheromones() {
+		if (pheromones == null)
+			pheromones = ctx.newNodePheromones();
+
+		// Something is about to be dropped, step the element.
+		ctx.activate(this);
+
+		return pheromones;
+	}
+
+	/**
+	 * Get the transition table of a colony on this node. The table is built
+	 * at most once per step, unless edges of the node change.
+	 * 
+	 * @param colony
+	 *            the colony
+	 * @return the transition table
+	 */
+	public TransitionTable getTransitions(Colony colony) {
+		TransitionTable[] t = transitions;
+		int index = colony.getIndex();
+
+		if (t == null || index >= t.length) {
+			t = new TransitionTable[Math.max(index + 1, ctx.getColonyCount())];
+			transitions = t;
+		}
+
+		TransitionTable table = t[index];
+
+		if (table == null || !table.isValid(ctx, this)) {
+			table = new TransitionTable(ctx, this, colony);
+			t[index] = table;
+		}
+
+		return table;
+	}
+
+	/**
+	 * Forget the cached transition tables.
+	 */
+	public void clearTransitions() {
+		transitions = null;
+	}
+
 	public float getEdgesTotalPheromoneLoad() {
 		float sum = 0;
 		
@@ -159,9 +266,22 @@ public class AntNode extends AdjacencyListNode implements Pheromonable {
 		if (needCommit) {
 			totalAntCount = totalAntCountTmp;
 
-			for (int i = 0; i < antCountsPerColony.length; ++i)
+			int d = -1, max = 0;
+
+			for (int i = 0; i < antCountsPerColony.length; ++i) {
 				antCountsPerColony[i] = antCountsPerColonyTmp[i];
 
+				if (antCountsPerColony[i] > max) {
+					max = antCountsPerColony[i];
+					d = i;
+				}
+			}
+
+			if (d != dominant) {
+				dominant = d;
+				ctx.dominantChanged();
+			}
+
 			needCommit = false;
 		}
 	}
@@ -186,6 +306,65 @@ public class AntNode extends AdjacencyListNode implements Pheromonable {
 		return getEdgeSet();
 	}
 
+	/**
+	 * Number of ants registered on this node. Contrary to
+	 * {@link #getTotalAntCount()}, this is up to date even before the commit.
+	 * 
+	 * @return resident ants count
+	 */
+	public int getResidentCount() {
+		return residentCount;
+	}
+
+	/**
+	 * Iterate over the ants registered on this node. Ants must not move while
+	 * iterating, use {@link #getResidents()} to move them.
+	 * 
+	 * @return an iterable over resident ants
+	 */
+	public Iterable<Ant> eachResident() {
+		return new Iterable<Ant>() {
+			public Iterator<Ant> iterator() {
+				return new Iterator<Ant>() {
+					Ant next = residents;
+
+					public boolean hasNext() {
+						return next != null;
+					}
+
+					public Ant next() {
+						if (next == null)
+							throw new NoSuchElementException();
+
+						Ant ant = next;
+						next = ant.nextResident;
+
+						return ant;
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Copy of the ants registered on this node.
+	 * 
+	 * @return resident ants
+	 */
+	public Ant[] getResidents() {
+		Ant[] copy = new Ant[residentCount];
+		int i = 0;
+
+		for (Ant ant = residents; ant != null; ant = ant.nextResident)
+			copy[i++] = ant;
+
+		return copy;
+	}
+
 	/**
 	 * An ant arrived on this node. This only update temporary informations. Use
 	 * {@link #commit()} to update. Commit should be called only at the end of
@@ -196,8 +375,18 @@ public class AntNode extends AdjacencyListNode implements Pheromonable {
 	 */
 	public void registerAnt(Ant ant) {
 		needCommit = true;
+		ctx.activate(this);
 		totalAntCountTmp += 1;
 
+		ant.prevResident = null;
+		ant.nextResident = residents;
+
+		if (residents != null)
+			residents.prevResident = ant;
+
+		residents = ant;
+		residentCount++;
+
 		int index = ant.getColony().getIndex();
 		checkColonyArraySizes(index);
 		antCountsPerColonyTmp[index]++;
@@ -213,8 +402,21 @@ public class AntNode extends AdjacencyListNode implements Pheromonable {
 	 */
 	public void unregisterAnt(Ant ant) {
 		needCommit = true;
+		ctx.activate(this);
 		totalAntCountTmp -= 1;
 
+		if (ant.prevResident != null)
+			ant.prevResident.nextResident = ant.nextResident;
+		else
+			residents = ant.nextResident;
+
+		if (ant.nextResident != null)
+			ant.nextResident.prevResident = ant.prevResident;
+
+		ant.prevResident = null;
+		ant.nextResident = null;
+		residentCount--;
+
 		int index = ant.getColony().getIndex();
 		checkColonyArraySizes(index);
 		antCountsPerColonyTmp[index] -= 1;
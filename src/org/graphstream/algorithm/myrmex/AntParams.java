@@ -30,6 +30,49 @@ import org.graphstream.algorithm.DefineParameter;
  * 
  */
 public class AntParams {
+	/**
+	 * Where pheromone loads are stored.
+	 */
+	public static enum PheromoneStorage {
+		/**
+		 * Each element holds its own pheromones on the heap.
+		 */
+		HEAP,
+		/**
+		 * Loads of all edges and all nodes are stored in two matrices outside
+		 * of the heap, elements only hold a row index.
+		 */
+		OFF_HEAP
+	}
+
+	/**
+	 * Format of the measures file.
+	 */
+	public static enum MeasuresFormat {
+		/**
+		 * One line per value, see {@link MeasuresWriter}.
+		 */
+		CSV,
+		/**
+		 * Compact binary records, see {@link MeasuresWriter}.
+		 */
+		BINARY
+	}
+
+	/**
+	 * Format of the pheromone changes file.
+	 */
+	public static enum DeltaFormat {
+		/**
+		 * GraphStream DGS events, see {@link PheromoneDeltaWriter}.
+		 */
+		DGS,
+		/**
+		 * Compact binary records, see {@link PheromoneDeltaWriter}.
+		 */
+		BINARY
+	}
+
 	public static enum DropOn {
 		NODES(true,false),
 		EDGES(false,true),
@@ -138,8 +181,121 @@ public class AntParams {
 	@DefineParameter(name = "ant.params.outputMeasuresPath")
 	protected String outputMeasuresPath = "%prefix%measures.dat";
 
+	@DefineParameter(name = "ant.params.checkpointPath")
+	protected String checkpointPath = "%prefix%checkpoint.bin";
+
+	@DefineParameter(name = "ant.params.measuresFormat")
+	protected MeasuresFormat measuresFormat = MeasuresFormat.BINARY;
+
+	@DefineParameter(name = "ant.params.deltaOutput")
+	protected boolean deltaOutput = false;
+
+	@DefineParameter(name = "ant.params.outputDeltaPath")
+	protected String outputDeltaPath = "%prefix%pheromones.dgs";
+
+	@DefineParameter(name = "ant.params.deltaFormat")
+	protected DeltaFormat deltaFormat = DeltaFormat.DGS;
+
+	/**
+	 * A pheromone load is written to the changes file only if it differs from
+	 * the last written value of more than this tolerance.
+	 */
+	@DefineParameter(name = "ant.params.deltaTolerance", min = 0)
+	protected float deltaTolerance = 0.001f;
+
+	/**
+	 * If true, the results of the ants are written back to the registered
+	 * graph as attributes at the end of each computation.
+	 */
+	@DefineParameter(name = "ant.params.publishResults")
+	protected boolean publishResults = false;
+
+	@DefineParameter(name = "ant.params.publishPrefix")
+	protected String publishPrefix = "myrmex.";
+
+	/**
+	 * A published value is updated only if it changed of more than this
+	 * threshold.
+	 */
+	@DefineParameter(name = "ant.params.publishThreshold", min = 0)
+	protected float publishThreshold = 0.01f;
+
 	@DefineParameter(name = "ant.params.dropOn")
 	protected DropOn dropPheromoneOn = DropOn.EDGES;
+
+	@DefineParameter(name = "ant.params.pheromoneStorage")
+	protected PheromoneStorage pheromoneStorage = PheromoneStorage.HEAP;
+
+	/**
+	 * If true, off-heap pheromones are evaporated by the vector kernels when
+	 * they are available, see {@link PheromoneKernels#getDefault()}.
+	 */
+	@DefineParameter(name = "ant.params.vectorKernels")
+	protected boolean vectorKernels = true;
+
+	/**
+	 * If true, heap pheromones evaporate when they are read rather than at
+	 * each step, so only elements on which something has been dropped are
+	 * visited. Off-heap pheromones are always evaporated at each step.
+	 */
+	@DefineParameter(name = "ant.params.lazyEvaporation")
+	protected boolean lazyEvaporation = false;
+
+	/**
+	 * Number of workers used to run a step. If 1, steps are run on the caller
+	 * thread; if 0, one worker per available processor is used.
+	 */
+	@DefineParameter(name = "ant.params.parallelism", min = 0)
+	protected int parallelism = 1;
+
+	/**
+	 * Number of ants, edges or nodes handled by a worker in one chunk when
+	 * steps are run in parallel.
+	 */
+	@DefineParameter(name = "ant.params.chunkSize", min = 1)
+	protected int chunkSize = 1024;
+
+	/**
+	 * Loads not greater than this value are considered null. Elements only
+	 * carrying such loads are not stepped anymore, these loads are cleared and
+	 * elements left without pheromones release them. With the default of 0,
+	 * elements are stepped until their loads underflow.
+	 */
+	@DefineParameter(name = "ant.params.epsilon", min = 0)
+	protected float epsilon = 0;
+
+	/**
+	 * If true, the context publishes a snapshot of the ants counts and
+	 * pheromone loads at the end of each step, readable without locking the
+	 * context. Capturing a snapshot costs a pass over the graph.
+	 */
+	@DefineParameter(name = "ant.params.snapshots")
+	protected boolean snapshots = false;
+
+	/**
+	 * If true, {@link AntAlgorithm#compute()} runs steps on a dedicated thread
+	 * and returns without waiting for them. This enables snapshots, which are
+	 * the way to read the state of the context while a step runs. Snapshots
+	 * enabled this way are disabled again when the asynchronous mode is.
+	 */
+	@DefineParameter(name = "ant.params.asyncSteps")
+	protected boolean asyncSteps = false;
+
+	/**
+	 * Maximum number of graph events buffered between two steps. When this
+	 * number is reached, buffered events are applied without waiting for the
+	 * next step. Events still in the queue of the proxy pipe, not pumped yet,
+	 * are not counted.
+	 */
+	@DefineParameter(name = "ant.params.topologyBufferSize", min = 1)
+	protected int topologyBufferSize = 65536;
+
+	/**
+	 * Maximum number of removed ants kept by each colony to be reused by the
+	 * next additions. If 0, removed ants are left to the garbage collector.
+	 */
+	@DefineParameter(name = "ant.params.antPoolSize", min = 0)
+	protected int antPoolSize = 0;
 	
 	public AntParams() {
 		defaults();
@@ -160,6 +316,20 @@ public class AntParams {
 		agoraphobia = 0.2f;
 		jump = 1;
 		dropPheromoneOn = DropOn.EDGES;
+		pheromoneStorage = PheromoneStorage.HEAP;
+		vectorKernels = true;
+		lazyEvaporation = false;
+		parallelism = 1;
+		chunkSize = 1024;
+		measuresFormat = MeasuresFormat.BINARY;
+		epsilon = 0;
+		topologyBufferSize = 65536;
+		asyncSteps = false;
+		snapshots = false;
+		antPoolSize = 0;
+		deltaFormat = DeltaFormat.DGS;
+		deltaTolerance = 0.001f;
+		publishThreshold = 0.01f;
 	}
 
 	public void randomize() {
@@ -184,11 +354,106 @@ public class AntParams {
 	public String getOutputMeasuresPath() {
 		return formatPath(outputMeasuresPath);
 	}
+
+	public String getCheckpointPath() {
+		return formatPath(checkpointPath);
+	}
+
+	public MeasuresFormat getMeasuresFormat() {
+		return measuresFormat;
+	}
+
+	public boolean isDeltaOutput() {
+		return deltaOutput;
+	}
+
+	public String getOutputDeltaPath() {
+		return formatPath(outputDeltaPath);
+	}
+
+	public DeltaFormat getDeltaFormat() {
+		return deltaFormat;
+	}
+
+	public float getDeltaTolerance() {
+		return deltaTolerance;
+	}
+
+	public boolean isSnapshots() {
+		return snapshots;
+	}
+
+	public boolean isAsyncSteps() {
+		return asyncSteps;
+	}
+
+	public boolean isPublishResults() {
+		return publishResults;
+	}
+
+	public String getPublishPrefix() {
+		return publishPrefix;
+	}
+
+	public float getPublishThreshold() {
+		return publishThreshold;
+	}
 	
 	public DropOn getDropPheromoneOn() {
 		return dropPheromoneOn;
 	}
 
+	public PheromoneStorage getPheromoneStorage() {
+		return pheromoneStorage;
+	}
+
+	public boolean isVectorKernels() {
+		return vectorKernels;
+	}
+
+	/**
+	 * Kernels to use for off-heap pheromones.
+	 * 
+	 * @return the default kernels if vector kernels are enabled, else the
+	 *         scalar ones
+	 */
+	public PheromoneKernels getPheromoneKernels() {
+		return vectorKernels ? PheromoneKernels.getDefault()
+				: PheromoneKernels.SCALAR;
+	}
+
+	public boolean isLazyEvaporation() {
+		return lazyEvaporation;
+	}
+
+	/**
+	 * Get the number of workers used to run a step.
+	 * 
+	 * @return the workers count, 1 for sequential steps
+	 */
+	public int getParallelism() {
+		if (parallelism == 0)
+			return Runtime.getRuntime().availableProcessors();
+
+		return parallelism;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public float getEpsilon() {
+		return epsilon;
+	}
+
+	public int getTopologyBufferSize() {
+		return topologyBufferSize;
+	}
+
+	public int getAntPoolSize() {
+		return antPoolSize;
+	}
+
 	protected String formatPath(String path) {
 		if (path.contains("%prefix%")) {
 			path = path.replace("%prefix%", globalFilePrefix);
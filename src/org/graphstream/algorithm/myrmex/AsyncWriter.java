@@ -0,0 +1,226 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write items to a stream from a background thread. Items are queued by the
+ * producer and encoded by the writer thread, so the producer only pays for
+ * the queuing. The queue is bounded: if the writer can not keep up, the
+ * producer waits rather than dropping items or exhausting the memory.
+ * 
+ * An error raised by the writer thread stops the writing and is thrown back to
+ * the producer at its next call.
+ * 
+ * @author adutot, gsavin
+ * 
+ * @param <T>
+ *            type of the written items
+ */
+public abstract class AsyncWriter<T> {
+	/**
+	 * Pushed in the queue to stop the writer thread.
+	 */
+	private static final Object END = new Object();
+
+	protected final OutputStream out;
+
+	protected final BlockingQueue<Object> queue;
+
+	protected final Thread thread;
+
+	/**
+	 * Error raised by the writer thread, if any.
+	 */
+	protected volatile IOException failure;
+
+	protected boolean closed = false;
+
+	/**
+	 * New writer. The writer thread is started by {@link #start()}.
+	 * 
+	 * @param name
+	 *            name of the writer thread
+	 * @param out
+	 *            the stream to write to, closed with the writer
+	 * @param capacity
+	 *            maximum number of items waiting to be written
+	 */
+	protected AsyncWriter(String name, OutputStream out, int capacity) {
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.queue = new ArrayBlockingQueue<Object>(Math.max(1, capacity));
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				AsyncWriter.this.run();
+			}
+		}, name);
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Start the writer thread.
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Queue an item. This blocks only if the queue is full.
+	 * 
+	 * @param item
+	 *            the item to write
+	 * @throws IOException
+	 *             if the writer has failed or has been closed
+	 */
+	public void write(T item) throws IOException {
+		if (closed)
+			throw new IOException("writer is closed");
+
+		enqueue(item);
+	}
+
+	/**
+	 * Stop accepting items and let the writer thread write the pending ones
+	 * then close the stream, without waiting for it.
+	 * 
+	 * @throws IOException
+	 *             if the writer has failed
+	 */
+	public void finish() throws IOException {
+		if (!closed) {
+			closed = true;
+
+			if (thread.isAlive())
+				enqueue(END);
+			else
+				out.close();
+		}
+
+		checkFailure();
+	}
+
+	/**
+	 * Wait for the writer thread to be done, {@link #finish()} has to be
+	 * called before.
+	 * 
+	 * @throws IOException
+	 *             if the writer has failed
+	 */
+	public void await() throws IOException {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+
+		checkFailure();
+	}
+
+	/**
+	 * Write the pending items, then close the stream and stop the writer
+	 * thread.
+	 * 
+	 * @throws IOException
+	 *             if the writer has failed
+	 */
+	public void close() throws IOException {
+		finish();
+		await();
+	}
+
+	protected void enqueue(Object item) throws IOException {
+		checkFailure();
+
+		try {
+			while (!queue.offer(item, 100, TimeUnit.MILLISECONDS))
+				checkFailure();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * Called by the writer thread before the first item.
+	 * 
+	 * @throws IOException
+	 */
+	protected void writeHeader() throws IOException {
+	}
+
+	/**
+	 * Called by the writer thread for each item.
+	 * 
+	 * @param item
+	 *            the item to write
+	 * @throws IOException
+	 */
+	protected abstract void writeItem(T item) throws IOException;
+
+	protected void checkFailure() throws IOException {
+		IOException e = failure;
+
+		if (e != null)
+			throw new IOException("writer has failed", e);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected void run() {
+		try {
+			writeHeader();
+
+			while (true) {
+				Object item = queue.take();
+
+				if (item == END)
+					break;
+
+				writeItem((T) item);
+
+				// Flush only when idle, so bursts are written in large blocks.
+				if (queue.isEmpty())
+					out.flush();
+			}
+		} catch (IOException e) {
+			failure = e;
+		} catch (InterruptedException e) {
+			failure = new InterruptedIOException();
+		} finally {
+			try {
+				out.close();
+			} catch (IOException e) {
+				if (failure == null)
+					failure = e;
+			}
+
+			// Release a producer waiting on a full queue.
+			queue.clear();
+		}
+	}
+}
@@ -0,0 +1,563 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * State of a context which allows a warm restart : step counter, state of the
+ * random streams, pheromone loads of nodes and edges and position of the ants
+ * of each colony. Elements are designated by their id, so a checkpoint can be
+ * restored on a context whose internal graph has been fed with the same graph
+ * again.
+ * 
+ * A checkpoint is captured while the context is locked, then encoded and
+ * written by a background thread, see {@link #save(AntContext, String)}. It is
+ * read back through a memory mapping of the file, see
+ * {@link #restore(AntContext, String)}.
+ * 
+ * The format is a sequence of big-endian values : the int {@link #MAGIC}, the
+ * short {@link #VERSION}, the int step, the long random seed, the long count
+ * of streams derived by {@link AntContext#currentRandom()} outside of the ants
+ * phase, the colonies (name and marker), the
+ * nodes then the edges (id then loads of each marker, or none) and the ants of
+ * each colony (id, or none for automatic ids, then node ordinal). Strings and
+ * byte arrays are prefixed by their int length, -1 standing for null.
+ * Pheromone objects carrying data are not saved, only their loads. The
+ * {@link java.util.Random} of {@link AntContext#random()} is not used by the
+ * context and is not saved.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class Checkpoint {
+	public static final int MAGIC = 0x4D59434B;
+	public static final short VERSION = 2;
+
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	protected int step;
+	protected long randomSeed;
+	protected long defaultStreams;
+
+	protected String[] colonyNames;
+	protected int[] colonyMarkers;
+
+	/**
+	 * Ids and loads of the nodes and edges. Loads are indexed by marker, and
+	 * null for elements without pheromones.
+	 */
+	protected String[] nodeIds;
+	protected float[][] nodeLoads;
+	protected String[] edgeIds;
+	protected float[][] edgeLoads;
+
+	/**
+	 * Ants of each colony : explicit ids (null for automatic ids) and ordinal
+	 * of their node in {@link #nodeIds}, -1 if they have no node.
+	 */
+	protected String[][] antIds;
+	protected int[][] antNodes;
+
+	protected Checkpoint() {
+	}
+
+	/**
+	 * Capture the state of a context. The context is locked while capturing.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 * @return the checkpoint
+	 */
+	public static Checkpoint capture(AntContext ctx) {
+		Checkpoint cp = new Checkpoint();
+
+		ctx.lock();
+
+		try {
+			AntGraph graph = ctx.getInternalGraph();
+			int nodes = ctx.getNodeCount();
+			int edges = graph.getEdgeCount();
+
+			cp.step = ctx.step;
+			cp.randomSeed = ctx.params.randomSeed;
+			cp.defaultStreams = ctx.defaultStreams;
+
+			cp.nodeIds = new String[nodes];
+			cp.nodeLoads = new float[nodes][];
+
+			for (int i = 0; i < nodes; i++) {
+				AntNode n = ctx.getNode(i);
+				cp.nodeIds[i] = n.getId();
+				cp.nodeLoads[i] = loads(n.pheromones);
+			}
+
+			cp.edgeIds = new String[edges];
+			cp.edgeLoads = new float[edges][];
+
+			for (int i = 0; i < edges; i++) {
+				AntEdge e = graph.getEdge(i);
+				cp.edgeIds[i] = e.getId();
+				cp.edgeLoads[i] = loads(e.pheromones);
+			}
+
+			ArrayList<Colony> colonies = new ArrayList<Colony>();
+
+			for (Colony colony : ctx.eachColony())
+				colonies.add(colony);
+
+			cp.colonyNames = new String[colonies.size()];
+			cp.colonyMarkers = new int[colonies.size()];
+			cp.antIds = new String[colonies.size()][];
+			cp.antNodes = new int[colonies.size()][];
+
+			for (int c = 0; c < colonies.size(); c++) {
+				Colony colony = colonies.get(c);
+				ArrayList<Ant> ants = new ArrayList<Ant>();
+
+				synchronized (colony) {
+					for (int i = 0; i < colony.antCount; i++)
+						if (!colony.ants[i].removing)
+							ants.add(colony.ants[i]);
+
+					for (int i = 0; i < colony.antsAddCount; i++)
+						if (!colony.antsAdd[i].removing)
+							ants.add(colony.antsAdd[i]);
+				}
+
+				cp.colonyNames[c] = colony.getName();
+				cp.colonyMarkers[c] = colony.getIndex();
+				cp.antIds[c] = new String[ants.size()];
+				cp.antNodes[c] = new int[ants.size()];
+
+				for (int i = 0; i < ants.size(); i++) {
+					Ant ant = ants.get(i);
+					AntNode n = ant.getCurrentNode();
+
+					cp.antIds[c][i] = ant.id;
+					cp.antNodes[c][i] = n == null ? -1 : n.getDenseIndex();
+				}
+			}
+		} finally {
+			ctx.unlock();
+		}
+
+		return cp;
+	}
+
+	/**
+	 * Capture the state of a context and write it to a file from a background
+	 * thread. The returned writer can be used to wait for the end of the
+	 * writing with {@link AsyncWriter#await()}.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 * @param path
+	 *            path of the checkpoint file
+	 * @return the writer of the checkpoint
+	 * @throws IOException
+	 *             if the file can not be created
+	 */
+	public static AsyncWriter<Checkpoint> save(AntContext ctx, String path)
+			throws IOException {
+		Checkpoint cp = capture(ctx);
+		AsyncWriter<Checkpoint> writer = new AsyncWriter<Checkpoint>(
+				"myrmex-checkpoint", new FileOutputStream(path), 1) {
+			protected void writeItem(Checkpoint item) throws IOException {
+				item.write(out);
+			}
+		};
+
+		writer.start();
+		writer.write(cp);
+		writer.finish();
+
+		return writer;
+	}
+
+	/**
+	 * Read a checkpoint file and restore it in a context.
+	 * 
+	 * @param ctx
+	 *            ants context, initialized, with its colonies and graph
+	 * @param path
+	 *            path of the checkpoint file
+	 * @throws IOException
+	 *             if the file can not be read or is not a checkpoint
+	 */
+	public static void restore(AntContext ctx, String path) throws IOException {
+		read(path).apply(ctx);
+	}
+
+	/**
+	 * Read a checkpoint file through a memory mapping.
+	 * 
+	 * @param path
+	 *            path of the checkpoint file
+	 * @return the checkpoint
+	 * @throws IOException
+	 *             if the file can not be read or is not a checkpoint
+	 */
+	public static Checkpoint read(String path) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(path),
+				StandardOpenOption.READ);
+
+		try {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("checkpoint is too large to be mapped");
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+
+			return read(buffer);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Decode a checkpoint.
+	 * 
+	 * @param buffer
+	 *            the encoded checkpoint, big-endian
+	 * @return the checkpoint
+	 * @throws IOException
+	 *             if this is not a checkpoint
+	 */
+	public static Checkpoint read(ByteBuffer buffer) throws IOException {
+		Checkpoint cp = new Checkpoint();
+
+		if (buffer.getInt() != MAGIC)
+			throw new IOException("not a checkpoint");
+
+		if (buffer.getShort() != VERSION)
+			throw new IOException("unsupported checkpoint version");
+
+		cp.step = buffer.getInt();
+		cp.randomSeed = buffer.getLong();
+		cp.defaultStreams = buffer.getLong();
+
+		int colonies = buffer.getInt();
+		cp.colonyNames = new String[colonies];
+		cp.colonyMarkers = new int[colonies];
+
+		for (int c = 0; c < colonies; c++) {
+			cp.colonyNames[c] = getString(buffer);
+			cp.colonyMarkers[c] = buffer.getInt();
+		}
+
+		int nodes = buffer.getInt();
+		cp.nodeIds = new String[nodes];
+		cp.nodeLoads = new float[nodes][];
+
+		for (int i = 0; i < nodes; i++) {
+			cp.nodeIds[i] = getString(buffer);
+			cp.nodeLoads[i] = getLoads(buffer);
+		}
+
+		int edges = buffer.getInt();
+		cp.edgeIds = new String[edges];
+		cp.edgeLoads = new float[edges][];
+
+		for (int i = 0; i < edges; i++) {
+			cp.edgeIds[i] = getString(buffer);
+			cp.edgeLoads[i] = getLoads(buffer);
+		}
+
+		cp.antIds = new String[colonies][];
+		cp.antNodes = new int[colonies][];
+
+		for (int c = 0; c < colonies; c++) {
+			int ants = buffer.getInt();
+			cp.antIds[c] = new String[ants];
+			cp.antNodes[c] = new int[ants];
+
+			for (int i = 0; i < ants; i++) {
+				cp.antIds[c][i] = getString(buffer);
+				cp.antNodes[c][i] = buffer.getInt();
+			}
+		}
+
+		return cp;
+	}
+
+	/**
+	 * Encode this checkpoint.
+	 * 
+	 * @param stream
+	 *            the stream to write to
+	 * @throws IOException
+	 */
+	public void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeInt(step);
+		out.writeLong(randomSeed);
+		out.writeLong(defaultStreams);
+
+		out.writeInt(colonyNames.length);
+
+		for (int c = 0; c < colonyNames.length; c++) {
+			putString(out, colonyNames[c]);
+			out.writeInt(colonyMarkers[c]);
+		}
+
+		out.writeInt(nodeIds.length);
+
+		for (int i = 0; i < nodeIds.length; i++) {
+			putString(out, nodeIds[i]);
+			putLoads(out, nodeLoads[i]);
+		}
+
+		out.writeInt(edgeIds.length);
+
+		for (int i = 0; i < edgeIds.length; i++) {
+			putString(out, edgeIds[i]);
+			putLoads(out, edgeLoads[i]);
+		}
+
+		for (int c = 0; c < colonyNames.length; c++) {
+			out.writeInt(antIds[c].length);
+
+			for (int i = 0; i < antIds[c].length; i++) {
+				putString(out, antIds[c][i]);
+				out.writeInt(antNodes[c][i]);
+			}
+		}
+
+		out.flush();
+	}
+
+	/**
+	 * Restore this checkpoint in a context. Colonies missing in the context
+	 * are added, ants of the checkpointed colonies are replaced, and nodes
+	 * and edges are matched by id, the ones which do not exist anymore being
+	 * ignored. Elements of the context missing in the checkpoint lose their
+	 * loads. Loads of markers which had no colony are dropped. Ants whose node
+	 * does not exist anymore are put on a random node.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 */
+	public void apply(AntContext ctx) {
+		ctx.lock();
+
+		try {
+			AntGraph graph = ctx.getInternalGraph();
+
+			ctx.step = step;
+			ctx.params.randomSeed = randomSeed;
+
+			// Total loads are summed again from the restored loads. Elements
+			// missing in the checkpoint had no loads, they are left empty.
+			ctx.totalLoads = new float[1];
+
+			for (AntNode n : ctx.eachNode()) {
+				ctx.releasePheromones(n.pheromones);
+				n.pheromones = null;
+			}
+
+			for (AntEdge e : ctx.eachEdge()) {
+				ctx.releasePheromones(e.pheromones);
+				e.pheromones = null;
+			}
+
+			HashMap<String, Colony> byName = new HashMap<String, Colony>();
+			Colony[] colonies = new Colony[colonyNames.length];
+			int markers = 0;
+
+			for (int c = 0; c < colonyNames.length; c++)
+				markers = Math.max(markers, colonyMarkers[c] + 1);
+
+			// Markers without a colony in the checkpoint, as the loads left by
+			// a removed colony, are not restored.
+			int[] markerMap = new int[markers];
+			Arrays.fill(markerMap, -1);
+
+			for (Colony colony : ctx.eachColony())
+				byName.put(colony.getName(), colony);
+
+			for (int c = 0; c < colonyNames.length; c++) {
+				Colony colony = byName.get(colonyNames[c]);
+
+				if (colony == null) {
+					ctx.addColony(colonyNames[c]);
+
+					for (Colony added : ctx.eachColony())
+						if (added.getName().equals(colonyNames[c]))
+							colony = added;
+				}
+
+				colonies[c] = colony;
+				markerMap[colonyMarkers[c]] = colony.getIndex();
+			}
+
+			AntNode[] nodes = new AntNode[nodeIds.length];
+
+			for (int i = 0; i < nodeIds.length; i++) {
+				AntNode n = graph.getNode(nodeIds[i]);
+				nodes[i] = n;
+
+				if (n != null)
+					restoreLoads(ctx, n, nodeLoads[i], markerMap);
+			}
+
+			for (int i = 0; i < edgeIds.length; i++) {
+				AntEdge e = graph.getEdge(edgeIds[i]);
+
+				if (e != null)
+					restoreLoads(ctx, e, edgeLoads[i], markerMap);
+			}
+
+			for (int c = 0; c < colonies.length; c++) {
+				Colony colony = colonies[c];
+
+				colony.commit();
+
+				for (int i = colony.getAntCount() - 1; i >= 0; i--)
+					colony.removeAnt(colony.getAnt(i));
+
+				colony.commit();
+
+				for (int i = 0; i < antIds[c].length; i++) {
+					int ordinal = antNodes[c][i];
+					AntNode n = ordinal >= 0 ? nodes[ordinal] : null;
+
+					if (n == null)
+						n = ctx.getRandomNode();
+
+					colony.addAnt(antIds[c][i], n);
+				}
+
+				colony.commit();
+			}
+
+			// Restored last, ants placed on random nodes have drawn streams.
+			ctx.defaultStreams = defaultStreams;
+		} finally {
+			ctx.unlock();
+		}
+	}
+
+	protected static void restoreLoads(AntContext ctx, Pheromonable element,
+			float[] loads, int[] markerMap) {
+		if (loads != null) {
+			Pheromones p = element.ensurePheromones();
+
+			for (int m = 0; m < loads.length && m < markerMap.length; m++) {
+				if (loads[m] != 0 && markerMap[m] >= 0) {
+					int marker = markerMap[m];
+
+					p.setLoad(marker, loads[m]);
+
+					if (marker >= ctx.totalLoads.length)
+						ctx.totalLoads = Arrays.copyOf(ctx.totalLoads,
+								marker + 1);
+
+					ctx.totalLoads[marker] += loads[m];
+				}
+			}
+		}
+	}
+
+	protected static float[] loads(Pheromones p) {
+		if (p == null)
+			return null;
+
+		float[] loads = new float[p.getMarkerCount()];
+
+		for (int m = 0; m < loads.length; m++)
+			loads[m] = p.getLoad(m);
+
+		return loads;
+	}
+
+	protected static void putBytes(DataOutputStream out, byte[] bytes)
+			throws IOException {
+		if (bytes == null)
+			out.writeInt(-1);
+		else {
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	protected static void putString(DataOutputStream out, String s)
+			throws IOException {
+		putBytes(out, s == null ? null : s.getBytes(UTF8));
+	}
+
+	protected static void putLoads(DataOutputStream out, float[] loads)
+			throws IOException {
+		if (loads == null)
+			out.writeInt(-1);
+		else {
+			out.writeInt(loads.length);
+
+			for (int m = 0; m < loads.length; m++)
+				out.writeFloat(loads[m]);
+		}
+	}
+
+	protected static byte[] getBytes(ByteBuffer buffer) {
+		int length = buffer.getInt();
+
+		if (length < 0)
+			return null;
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+
+		return bytes;
+	}
+
+	protected static String getString(ByteBuffer buffer) {
+		byte[] bytes = getBytes(buffer);
+		return bytes == null ? null : new String(bytes, UTF8);
+	}
+
+	protected static float[] getLoads(ByteBuffer buffer) {
+		int length = buffer.getInt();
+
+		if (length < 0)
+			return null;
+
+		float[] loads = new float[length];
+		buffer.asFloatBuffer().get(loads);
+		buffer.position(buffer.position() + length * 4);
+
+		return loads;
+	}
+}
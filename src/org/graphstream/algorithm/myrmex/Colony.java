@@ -20,6 +20,7 @@
  */
 package org.graphstream.algorithm.myrmex;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
@@ -47,19 +48,41 @@ public abstract class Colony {
 	protected int index;
 
 	/**
-	 * Ants of this colony, by their id.
+	 * Ants of this colony. This is a dense table, the first
+	 * {@link #antCount} cells are used and the index of an ant in this table
+	 * is its slot.
 	 */
-	protected HashMap<String, Ant> ants = new HashMap<String, Ant>();
+	protected Ant[] ants = new Ant[16];
 
 	/**
-	 * Same as {@link #ants} but used by commit.
+	 * Number of ants in the table.
 	 */
-	protected HashMap<String, Ant> antsAdd = new HashMap<String, Ant>();
+	protected int antCount;
 
 	/**
-	 * Same as {@link #ants} but used by commit.
+	 * Ants waiting to be added by commit.
 	 */
-	protected HashMap<String, Ant> antsDel = new HashMap<String, Ant>();
+	protected Ant[] antsAdd = new Ant[16];
+	protected int antsAddCount;
+
+	/**
+	 * Ants waiting to be removed by commit.
+	 */
+	protected Ant[] antsDel = new Ant[16];
+	protected int antsDelCount;
+
+	/**
+	 * Removed ants waiting to be reused, see
+	 * {@link AntParams#getAntPoolSize()}.
+	 */
+	protected Ant[] pool = new Ant[0];
+	protected int poolCount;
+
+	/**
+	 * Ants which have been added with an explicit identifier. Ants with an
+	 * automatic identifier are never registered here.
+	 */
+	protected HashMap<String, Ant> namedAnts = null;
 
 	/**
 	 * Is a commit operation needed.
@@ -71,11 +94,6 @@ public abstract class Colony {
 	 */
 	protected int nodeCount;
 
-	/**
-	 * Automatic allocator for ants id.
-	 */
-	protected int newAntId;
-
 	/**
 	 * Factory used by the colony to create ants.
 	 */
@@ -164,7 +182,18 @@ public abstract class Colony {
 	 * @return Ant count.
 	 */
 	public int getAntCount() {
-		return ants.size();
+		return antCount;
+	}
+
+	/**
+	 * Get the i-th ant of this colony. Indices are valid between two commits.
+	 * 
+	 * @param i
+	 *            index of the ant, between 0 and {@link #getAntCount()}
+	 * @return the ant
+	 */
+	public Ant getAnt(int i) {
+		return ants[i];
 	}
 
 	/**
@@ -210,8 +239,6 @@ public abstract class Colony {
 
 	// Commands
 
-	protected int antIdGenerator = 0;
-	
 	/**
 	 * Add a new ant to the colony. This method only register an "add action"
 	 * but will effectively add the ant only when {@link #commit()} is called.
@@ -224,42 +251,155 @@ public abstract class Colony {
 	 * @throws SingletonException
 	 *             If an ant with the same identifier already exists.
 	 */
-	public void addAnt(String id, AntNode start) {
-		if ( id != null && antsDel.get(id) != null)
-			antsDel.remove(id);
-
-		if( id == null ) {
-			id = String.format("%s_%05x",name,antIdGenerator++);
+	public synchronized void addAnt(String id, AntNode start) {
+		if (id != null) {
+			if (namedAnts == null)
+				namedAnts = new HashMap<String, Ant>();
+
+			Ant old = namedAnts.get(id);
+
+			if (old != null) {
+				if (old.removing) {
+					// Cancel a pending removal, the commit will skip it. The
+					// ant has left its node when it was removed.
+					old.removing = false;
+					old.goTo(start);
+				}
+
+				return;
+			}
 		}
 
-		if (antsAdd.get(id) == null) {
-			Ant ant = antFactory().newAnt(id, start);
-			antsAdd.put(id, ant);
-		}
-		
+		Ant ant = obtainAnt(id, start);
+
+		if (id != null)
+			namedAnts.put(id, ant);
+
+		if (antsAddCount == antsAdd.length)
+			antsAdd = Arrays.copyOf(antsAdd, antsAddCount * 2);
+
+		antsAdd[antsAddCount++] = ant;
+		needCommit = true;
+	}
+
+	/**
+	 * Add n new ants with automatic identifiers, all starting on the same
+	 * node. As {@link #addAnt(String, AntNode)}, ants are effectively added
+	 * when {@link #commit()} is called.
+	 * 
+	 * @param start
+	 *            Ants start node.
+	 * @param n
+	 *            The number of ants to add.
+	 */
+	public synchronized void addAnts(AntNode start, int n) {
+		if (n <= 0)
+			return;
+
+		if (antsAddCount + n > antsAdd.length)
+			antsAdd = Arrays.copyOf(antsAdd, Math.max(antsAdd.length * 2,
+					antsAddCount + n));
+
+		for (int i = 0; i < n; i++)
+			antsAdd[antsAddCount++] = obtainAnt(null, start);
+
 		needCommit = true;
 	}
 
+	/**
+	 * Remove a given ant. The ant leaves its node now and is removed from the
+	 * colony at the next commit. Pending ants, not committed yet, are never
+	 * added.
+	 * 
+	 * @param ant
+	 *            The ant to remove.
+	 * @return true if the ant was not already being removed
+	 */
+	public synchronized boolean removeAnt(Ant ant) {
+		if (ant.colony != this || ant.removing)
+			return false;
+
+		ant.removing = true;
+		ant.goTo(null);
+
+		if (antsDelCount == antsDel.length)
+			antsDel = Arrays.copyOf(antsDel, antsDelCount * 2);
+
+		antsDel[antsDelCount++] = ant;
+		needCommit = true;
+
+		return true;
+	}
+
 	/**
 	 * Remove arbitrarily n ants of this colour.
 	 * 
 	 * @param n
 	 *            The number of ants to remove.
 	 */
-	public void removeAnts(int n) {
-		for (Ant ant : ants.values()) {
-			Ant old = antsDel.put(ant.getId(), ant);
+	public synchronized void removeAnts(int n) {
+		for (int i = antCount - 1; i >= 0 && n > 0; i--) {
+			Ant ant = ants[i];
 
-			if (old == null)
-				n--;
+			if (!ant.removing) {
+				ant.removing = true;
 
-			if (n == 0)
-				break;
+				if (antsDelCount == antsDel.length)
+					antsDel = Arrays.copyOf(antsDel, antsDelCount * 2);
+
+				antsDel[antsDelCount++] = ant;
+				n--;
+			}
 		}
 
 		needCommit = true;
 	}
 
+	/**
+	 * Number of removed ants kept to be reused.
+	 * 
+	 * @return pooled ants count
+	 */
+	public int getPoolSize() {
+		return poolCount;
+	}
+
+	/**
+	 * Take an ant from the pool, or create a new one if the pool is empty.
+	 */
+	protected Ant obtainAnt(String id, AntNode start) {
+		if (poolCount > 0) {
+			Ant ant = pool[--poolCount];
+			pool[poolCount] = null;
+			ant.reset(id, start);
+
+			return ant;
+		}
+
+		return antFactory().newAnt(id, start);
+	}
+
+	/**
+	 * Keep a removed ant to be reused, if the pool is not full.
+	 */
+	protected synchronized void recycle(Ant ant) {
+		int size = ctx.getAntParams().getAntPoolSize();
+
+		if (poolCount < size) {
+			if (poolCount == pool.length)
+				pool = Arrays.copyOf(pool, Math.min(size, Math.max(16,
+						poolCount * 2)));
+
+			pool[poolCount++] = ant;
+		} else if (pool.length > size) {
+			// The pool size has been reduced.
+			while (poolCount > size)
+				pool[--poolCount] = null;
+
+			pool = Arrays.copyOf(pool, poolCount);
+		}
+	}
+
 	/**
 	 * The ant factory used for this colony.
 	 * 
@@ -278,21 +418,57 @@ public abstract class Colony {
 	 */
 	public void commit() {
 		if (needCommit) {
-			for (Ant ant : antsDel.values()) {
-				Ant old = ants.remove(ant.getId());
-				assert old != null : "an ant '" + ant.getId()
-						+ "' that does not exits has been removed";
-			}
+			for (int i = 0; i < antsDelCount; i++) {
+				Ant ant = antsDel[i];
+				antsDel[i] = null;
+
+				if (ant.removing && ant.slot >= 0) {
+					assert ants[ant.slot] == ant : "an ant '" + ant.getId()
+							+ "' that does not exits has been removed";
+
+					ant.goTo(null);
+
+					// Swap-remove, the last ant takes the slot.
+					Ant last = ants[--antCount];
+					ants[ant.slot] = last;
+					last.slot = ant.slot;
+					ants[antCount] = null;
+
+					ant.slot = -1;
+					ant.removing = false;
+
+					if (namedAnts != null && ant.id != null)
+						namedAnts.remove(ant.id);
 
-			for (Ant ant : antsAdd.values()) {
-				Ant old = ants.put(ant.getId(), ant);
-				assert old == null : "identifier '" + ant.getId()
-						+ "' is already registered";
+					recycle(ant);
+				}
 			}
 
-			antsAdd.clear();
-			antsDel.clear();
+			if (antCount + antsAddCount > ants.length)
+				ants = Arrays.copyOf(ants, Math.max(ants.length * 2, antCount
+						+ antsAddCount));
+
+			for (int i = 0; i < antsAddCount; i++) {
+				Ant ant = antsAdd[i];
+				antsAdd[i] = null;
+
+				if (ant.removing) {
+					// Removed before being committed.
+					ant.removing = false;
+
+					if (namedAnts != null && ant.id != null)
+						namedAnts.remove(ant.id);
+
+					recycle(ant);
+					continue;
+				}
+
+				ant.slot = antCount;
+				ants[antCount++] = ant;
+			}
 
+			antsAddCount = 0;
+			antsDelCount = 0;
 			needCommit = false;
 		}
 	}
@@ -301,18 +477,45 @@ public abstract class Colony {
 	 * Make all the ants of the colony run.
 	 */
 	public void step() {
-		// System.out.printf("step %d ants\n", ants.size());
-		
-		for (Ant ant : ants.values())
-			ant.step();
+		// System.out.printf("step %d ants\n", antCount);
+		int chunkSize = Math.max(1, ctx.getAntParams().getChunkSize());
+
+		// Same chunks than parallel steps, so ants draw from the same streams.
+		for (int from = 0; from < antCount; from += chunkSize)
+			step(from, from + chunkSize);
+	}
+
+	/**
+	 * Make a range of the ants of the colony run. Ants are indexed by their
+	 * slot, which does not change between two commits. Ants of the range draw
+	 * from a stream derived from the seed, the step and the range start.
+	 * 
+	 * @param from
+	 *            index of the first ant (inclusive)
+	 * @param to
+	 *            index of the last ant (exclusive)
+	 */
+	public void step(int from, int to) {
+		to = Math.min(to, antCount);
+		ctx.useChunkRandom(ctx.newChunkRandom(index, from));
+
+		try {
+			for (int i = from; i < to; i++)
+				ants[i].step();
+		} finally {
+			ctx.useChunkRandom(null);
+		}
 	}
 
 	/**
 	 * Called when a colony is removed. This removes all ants.
 	 */
 	public void removed() {
-		for (Ant ant : ants.values()) {
-			ant.goTo(null);
-		}
+		for (int i = 0; i < antCount; i++)
+			ants[i].goTo(null);
+
+		// Pending ants are already registered on their start node.
+		for (int i = 0; i < antsAddCount; i++)
+			antsAdd[i].goTo(null);
 	}
 }
@@ -0,0 +1,159 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+/**
+ * Topology of the internal graph in compressed sparse row form. Nodes are
+ * designated by their dense index in the context (see
+ * {@link AntNode#getDenseIndex()}) and edges by their index in the internal
+ * graph. The neighbors of node n are stored in
+ * {@code neighbors[offsets[n] .. offsets[n + 1][}, in the order of
+ * {@link AntNode#getEdge(int)}, with the index of the edge leading to them in
+ * {@code edgeIds} at the same position.
+ * 
+ * Views are immutable, so ants can walk them with primitive indices from
+ * several threads. The graph builds a new view when the topology has changed,
+ * see {@link AntGraph#getAdjacency()}.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class CompactAdjacency {
+	protected final int[] offsets;
+	protected final int[] neighbors;
+	protected final int[] edgeIds;
+
+	/**
+	 * Nodes and edges by index, as they were when the view was built.
+	 */
+	protected final AntNode[] nodes;
+	protected final AntEdge[] edges;
+
+	/**
+	 * Build the view of the current topology of a graph.
+	 * 
+	 * @param ctx
+	 *            ants context, providing the dense node index
+	 * @param graph
+	 *            the internal graph
+	 */
+	public CompactAdjacency(AntContext ctx, AntGraph graph) {
+		int nodeCount = ctx.getNodeCount();
+		int edgeCount = graph.getEdgeCount();
+		int slots = 0;
+
+		nodes = new AntNode[nodeCount];
+		edges = new AntEdge[edgeCount];
+		offsets = new int[nodeCount + 1];
+
+		for (int n = 0; n < nodeCount; n++) {
+			nodes[n] = ctx.getNode(n);
+			offsets[n] = slots;
+			slots += nodes[n].getDegree();
+		}
+
+		offsets[nodeCount] = slots;
+		neighbors = new int[slots];
+		edgeIds = new int[slots];
+
+		for (int i = 0; i < edgeCount; i++)
+			edges[i] = graph.getEdge(i);
+
+		for (int n = 0; n < nodeCount; n++) {
+			AntNode node = nodes[n];
+			int s = offsets[n];
+
+			for (int k = 0; k < node.getDegree(); k++, s++) {
+				AntEdge e = node.getEdge(k);
+				AntNode o = e.getOpposite(node);
+
+				neighbors[s] = o.getDenseIndex();
+				edgeIds[s] = e.getIndex();
+			}
+		}
+	}
+
+	public int getNodeCount() {
+		return nodes.length;
+	}
+
+	public int getEdgeCount() {
+		return edges.length;
+	}
+
+	/**
+	 * Degree of a node.
+	 * 
+	 * @param node
+	 *            dense index of the node
+	 * @return number of edges of the node
+	 */
+	public int getDegree(int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/**
+	 * The k-th neighbor of a node, that is the opposite of its k-th edge.
+	 * 
+	 * @param node
+	 *            dense index of the node
+	 * @param k
+	 *            index of the edge in the node, lower than its degree
+	 * @return dense index of the neighbor
+	 */
+	public int getNeighbor(int node, int k) {
+		return neighbors[offsets[node] + k];
+	}
+
+	/**
+	 * Index of the k-th edge of a node.
+	 * 
+	 * @param node
+	 *            dense index of the node
+	 * @param k
+	 *            index of the edge in the node, lower than its degree
+	 * @return index of the edge in the graph
+	 */
+	public int getEdgeId(int node, int k) {
+		return edgeIds[offsets[node] + k];
+	}
+
+	/**
+	 * The k-th edge of a node.
+	 * 
+	 * @param node
+	 *            dense index of the node
+	 * @param k
+	 *            index of the edge in the node, lower than its degree
+	 * @return the edge
+	 */
+	public AntEdge getEdge(int node, int k) {
+		return edges[edgeIds[offsets[node] + k]];
+	}
+
+	public AntNode getNode(int node) {
+		return nodes[node];
+	}
+
+	public AntEdge getEdge(int edge) {
+		return edges[edge];
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.util.HashMap;
+
+/**
+ * Immutable view of the ants counts and pheromone loads of a context, as they
+ * were at the end of a step. The context publishes a new snapshot after each
+ * step, see {@link AntContext#getSnapshot()}, so any number of threads can
+ * read a consistent state without locking the context, while the next step
+ * is running.
+ * 
+ * Nodes are designated by their dense index and edges by their index, as in
+ * the {@link CompactAdjacency} the snapshot has been built from, or by their
+ * id. Markers are the indices of the colonies.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class ContextSnapshot {
+	/**
+	 * Indices of the elements of an adjacency view by id, shared by the
+	 * snapshots built on the same topology.
+	 */
+	protected static class Layout {
+		final CompactAdjacency adjacency;
+		final String[] nodeIds;
+		final String[] edgeIds;
+		final HashMap<String, Integer> nodeIndex;
+		final HashMap<String, Integer> edgeIndex;
+
+		Layout(CompactAdjacency adjacency) {
+			int nodes = adjacency.getNodeCount();
+			int edges = adjacency.getEdgeCount();
+
+			this.adjacency = adjacency;
+			this.nodeIds = new String[nodes];
+			this.edgeIds = new String[edges];
+			this.nodeIndex = new HashMap<String, Integer>(nodes * 2);
+			this.edgeIndex = new HashMap<String, Integer>(edges * 2);
+
+			for (int i = 0; i < nodes; i++) {
+				nodeIds[i] = adjacency.getNode(i).getId();
+				nodeIndex.put(nodeIds[i], i);
+			}
+
+			for (int i = 0; i < edges; i++) {
+				edgeIds[i] = adjacency.getEdge(i).getId();
+				edgeIndex.put(edgeIds[i], i);
+			}
+		}
+	}
+
+	protected final int step;
+
+	protected final Layout layout;
+
+	/**
+	 * Names of the colonies by marker, null for removed colonies.
+	 */
+	protected final String[] colonies;
+
+	protected final int markers;
+
+	/**
+	 * Ants per node and per marker, then total ants per node.
+	 */
+	protected final int[] antCounts;
+	protected final int[] totalAntCounts;
+
+	/**
+	 * Loads per element and per marker, row-major. Node loads are null if
+	 * pheromones are not dropped on nodes, and edge loads if they are not
+	 * dropped on edges.
+	 */
+	protected final float[] nodeLoads;
+	protected final float[] edgeLoads;
+
+	/**
+	 * Capture the state of a context. This has to be called while the
+	 * context is locked.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 * @param previous
+	 *            previous snapshot, whose layout is reused if the topology
+	 *            has not changed, may be null
+	 */
+	public ContextSnapshot(AntContext ctx, ContextSnapshot previous) {
+		CompactAdjacency adjacency = ctx.getInternalGraph().getAdjacency();
+		AntParams.DropOn dropOn = ctx.getAntParams().getDropPheromoneOn();
+		int m = 0;
+
+		for (Colony colony : ctx.eachColony())
+			m = Math.max(m, colony.getIndex() + 1);
+
+		this.step = ctx.getCurrentStep();
+		this.markers = m;
+		this.colonies = new String[m];
+		this.layout = previous != null
+				&& previous.layout.adjacency == adjacency ? previous.layout
+				: new Layout(adjacency);
+
+		for (Colony colony : ctx.eachColony())
+			colonies[colony.getIndex()] = colony.getName();
+
+		int nodes = adjacency.getNodeCount();
+		int edges = adjacency.getEdgeCount();
+
+		antCounts = new int[nodes * m];
+		totalAntCounts = new int[nodes];
+		nodeLoads = dropOn.onNodes ? new float[nodes * m] : null;
+		edgeLoads = dropOn.onEdges ? new float[edges * m] : null;
+
+		for (int n = 0; n < nodes; n++) {
+			AntNode node = adjacency.getNode(n);
+			totalAntCounts[n] = node.getTotalAntCount();
+
+			for (Colony colony : ctx.eachColony())
+				antCounts[n * m + colony.getIndex()] = node
+						.getAntCountForColony(colony);
+
+			if (nodeLoads != null)
+				load(node.getPheromones(), nodeLoads, n);
+		}
+
+		if (edgeLoads != null)
+			for (int e = 0; e < edges; e++)
+				load(adjacency.getEdge(e).getPheromones(), edgeLoads, e);
+	}
+
+	protected void load(Pheromones p, float[] loads, int row) {
+		for (int i = 0; i < markers; i++)
+			loads[row * markers + i] = p.getLoad(i);
+	}
+
+	/**
+	 * Step at the end of which the snapshot has been captured. Snapshots of a
+	 * context are ordered by step.
+	 * 
+	 * @return the step of the snapshot
+	 */
+	public int getStep() {
+		return step;
+	}
+
+	public int getNodeCount() {
+		return layout.nodeIds.length;
+	}
+
+	public int getEdgeCount() {
+		return layout.edgeIds.length;
+	}
+
+	/**
+	 * Number of markers, which is the greatest colony index plus one.
+	 * 
+	 * @return markers count
+	 */
+	public int getMarkerCount() {
+		return markers;
+	}
+
+	/**
+	 * Name of the colony of a marker.
+	 * 
+	 * @param marker
+	 *            the marker
+	 * @return the colony name, or null if there is no such colony
+	 */
+	public String getColonyName(int marker) {
+		return marker < markers ? colonies[marker] : null;
+	}
+
+	public String getNodeId(int node) {
+		return layout.nodeIds[node];
+	}
+
+	public String getEdgeId(int edge) {
+		return layout.edgeIds[edge];
+	}
+
+	/**
+	 * Index of a node in this snapshot.
+	 * 
+	 * @param id
+	 *            id of the node
+	 * @return the index of the node, or -1 if it is not in the snapshot
+	 */
+	public int getNodeIndex(String id) {
+		Integer i = layout.nodeIndex.get(id);
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * Index of an edge in this snapshot.
+	 * 
+	 * @param id
+	 *            id of the edge
+	 * @return the index of the edge, or -1 if it is not in the snapshot
+	 */
+	public int getEdgeIndex(String id) {
+		Integer i = layout.edgeIndex.get(id);
+		return i == null ? -1 : i;
+	}
+
+	public int getAntCount(int node) {
+		return totalAntCounts[node];
+	}
+
+	public int getAntCount(int node, int marker) {
+		return marker < markers ? antCounts[node * markers + marker] : 0;
+	}
+
+	public float getNodeLoad(int node, int marker) {
+		return nodeLoads == null || marker >= markers ? 0 : nodeLoads[node
+				* markers + marker];
+	}
+
+	public float getEdgeLoad(int edge, int marker) {
+		return edgeLoads == null || marker >= markers ? 0 : edgeLoads[edge
+				* markers + marker];
+	}
+
+	/**
+	 * Number of ants on a node.
+	 * 
+	 * @param id
+	 *            id of the node
+	 * @return the ants count, 0 if the node is not in the snapshot
+	 */
+	public int getAntCount(String id) {
+		int i = getNodeIndex(id);
+		return i < 0 ? 0 : getAntCount(i);
+	}
+
+	public int getAntCount(String id, int marker) {
+		int i = getNodeIndex(id);
+		return i < 0 ? 0 : getAntCount(i, marker);
+	}
+
+	public float getNodeLoad(String id, int marker) {
+		int i = getNodeIndex(id);
+		return i < 0 ? 0 : getNodeLoad(i, marker);
+	}
+
+	public float getEdgeLoad(String id, int marker) {
+		int i = getEdgeIndex(id);
+		return i < 0 ? 0 : getEdgeLoad(i, marker);
+	}
+}
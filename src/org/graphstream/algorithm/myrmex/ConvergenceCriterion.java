@@ -0,0 +1,47 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+/**
+ * Defines when a run of steps can stop before its maximum number of steps,
+ * see {@link AntContext#run(int, ConvergenceCriterion)}.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public interface ConvergenceCriterion {
+	/**
+	 * Called before the first step of a run.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 */
+	void reset(AntContext ctx);
+
+	/**
+	 * Called after each step of a run, while the context is locked.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 * @return true if the run has to stop
+	 */
+	boolean isConverged(AntContext ctx);
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of AntCo2.
+ *
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+/**
+ * Pheromones which evaporate on read. Loads are stored as they were at the
+ * step of their last update, and reads apply the evaporation of the steps
+ * elapsed since. Loads are only updated when something has been dropped, in
+ * which case the context commits these pheromones at the end of the step.
+ *
+ * Values read are the same than the ones of eagerly evaporated pheromones,
+ * with the exception of float rounding.
+ *
+ * @author adutot, gsavin
+ *
+ */
+public class LazyPheromones extends Pheromones {
+	protected final AntContext ctx;
+
+	/**
+	 * Step at which loads were last updated.
+	 */
+	protected int lastStep;
+
+	/**
+	 * Set to true if these pheromones are waiting to be committed by the
+	 * context.
+	 */
+	protected boolean registered = false;
+
+	public LazyPheromones(AntContext ctx) {
+		super(ctx);
+
+		this.ctx = ctx;
+		this.lastStep = ctx.getCurrentStep();
+	}
+
+	/**
+	 * Nothing is done here, pheromones are committed by the context only if
+	 * something has been dropped.
+	 */
+	public void step(AntContext ctx) {
+	}
+
+	public void commit() {
+		settle();
+		super.commit();
+		registered = false;
+	}
+
+	public float getTotalLoad() {
+		return super.getTotalLoad() * decay();
+	}
+
+	public void drop(Pheromone<?> pheromone) {
+		super.drop(pheromone);
+		register();
+	}
+
+	public void drop(int marker, float load) {
+		super.drop(marker, load);
+		register();
+	}
+
+	public void setLoad(int marker, float load) {
+		settle();
+		super.setLoad(marker, load);
+	}
+
+	/**
+	 * Loads evaporate on read, so these pheromones only need to be visited
+	 * when something has been dropped.
+	 */
+	public boolean prune(float epsilon) {
+		return !commitNeeded && pheromonesToProcessCount == 0;
+	}
+
+	/**
+	 * Stored loads may still be read after evaporation, lazy pheromones are
+	 * kept until their element is reset or removed.
+	 */
+	public boolean isDiscardable() {
+		return false;
+	}
+
+	protected float load(int marker) {
+		return loads[marker] * decay();
+	}
+
+	/**
+	 * Evaporation factor of the stored loads.
+	 *
+	 * @return the factor to apply to stored loads to get the current ones
+	 */
+	protected float decay() {
+		int age = ctx.getCurrentStep() - lastStep;
+		return age == 0 ? 1 : ctx.persistence(age);
+	}
+
+	/**
+	 * Apply the evaporation to the stored loads.
+	 */
+	protected void settle() {
+		float f = decay();
+
+		if (f != 1)
+			for (int i = 0; i < loads.length; i++)
+				loads[i] *= f;
+
+		lastStep = ctx.getCurrentStep();
+	}
+
+	protected void register() {
+		if (!registered) {
+			registered = true;
+			ctx.pheromonesDropped(this);
+		}
+	}
+}
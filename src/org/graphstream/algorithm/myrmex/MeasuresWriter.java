@@ -0,0 +1,382 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+
+/**
+ * Write the measures of each step of a context. Measures are sampled on the
+ * step thread, while the context is locked, and are encoded and written by a
+ * background thread. Measures are read from counters maintained by the
+ * context while stepping, pheromone measures use the total loads of
+ * {@link AntContext#getTotalLoad(int)}, so sampling never goes over the graph.
+ * 
+ * Two formats are available. CSV files have a "step,measure,colony,value"
+ * header and one line per value, the colony being empty for global measures.
+ * Binary files start with a header : the int {@link #MAGIC}, the short
+ * {@link #VERSION}, the byte count of measures then their labels as UTF
+ * strings, global measures first. Follow records, each one starting with a
+ * byte tag :
+ * <ul>
+ * <li>{@link #COLONY_RECORD}, short index then UTF name of a colony, written
+ * before the first sample in which the colony appears ;</li>
+ * <li>{@link #SAMPLE_RECORD}, int step, a float for each global measure, the
+ * short count of colonies then for each colony, in the order of the context,
+ * a float for each colony measure.</li>
+ * </ul>
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class MeasuresWriter extends AsyncWriter<MeasuresWriter.Sample> {
+	/**
+	 * Measures which can be computed. Measures are selected by their label in
+	 * {@link AntParams#getComputedMeasures()}.
+	 */
+	public static enum Measure {
+		ANTS("ants", false),
+		NODES("nodes", false),
+		EDGES("edges", false),
+		COLONIES("colonies", false),
+		JUMPS("jumps", false),
+		SURPOP("surpop", false),
+		MIGRATIONS("migrations", false),
+		PHEROMONES("pheromones", false),
+		POOL("pool", false),
+		DOMINANT_CHANGES("dominant", false),
+		COLONY_ANTS("colony.ants", true),
+		COLONY_JUMPS("colony.jumps", true),
+		COLONY_PHEROMONES("colony.pheromones", true);
+
+		public final String label;
+		public final boolean perColony;
+
+		Measure(String label, boolean perColony) {
+			this.label = label;
+			this.perColony = perColony;
+		}
+
+		/**
+		 * Get a measure from its label.
+		 * 
+		 * @param label
+		 *            label of the measure
+		 * @return the measure
+		 * @throws IllegalArgumentException
+		 *             if there is no such measure
+		 */
+		public static Measure forLabel(String label) {
+			for (Measure m : values())
+				if (m.label.equalsIgnoreCase(label))
+					return m;
+
+			throw new IllegalArgumentException("unknown measure \"" + label
+					+ "\"");
+		}
+	}
+
+	/**
+	 * Values of a step.
+	 */
+	static class Sample {
+		int step;
+		float[] values;
+		String[] colonies;
+		float[][] colonyValues;
+	}
+
+	public static final int MAGIC = 0x4D594D53;
+	public static final short VERSION = 1;
+	public static final byte COLONY_RECORD = 1;
+	public static final byte SAMPLE_RECORD = 2;
+
+	/**
+	 * Maximum number of samples waiting to be written.
+	 */
+	public static final int QUEUE_CAPACITY = 1024;
+
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	protected final AntParams.MeasuresFormat format;
+
+	protected final Measure[] globalMeasures;
+	protected final Measure[] colonyMeasures;
+
+	protected final DataOutputStream data;
+
+	/**
+	 * Line buffer of the CSV format.
+	 */
+	protected final StringBuilder text = new StringBuilder();
+
+	/**
+	 * Colonies names already declared by the writer thread.
+	 */
+	protected final ArrayList<String> declared = new ArrayList<String>();
+
+	/**
+	 * New writer. Measures are given as a list of labels separated by commas or
+	 * spaces, all measures are computed if the list is empty.
+	 * 
+	 * @param out
+	 *            stream to write to
+	 * @param format
+	 *            format of the output
+	 * @param measures
+	 *            labels of the measures to compute
+	 */
+	public MeasuresWriter(OutputStream out, AntParams.MeasuresFormat format,
+			String measures) {
+		this(out, format, parse(measures));
+	}
+
+	/**
+	 * New writer computing the given measures.
+	 * 
+	 * @param out
+	 *            stream to write to
+	 * @param format
+	 *            format of the output
+	 * @param computed
+	 *            the measures to compute
+	 */
+	protected MeasuresWriter(OutputStream out,
+			AntParams.MeasuresFormat format, EnumSet<Measure> computed) {
+		super("myrmex-measures", out, QUEUE_CAPACITY);
+
+		ArrayList<Measure> global = new ArrayList<Measure>();
+		ArrayList<Measure> colony = new ArrayList<Measure>();
+
+		for (Measure m : computed)
+			(m.perColony ? colony : global).add(m);
+
+		this.format = format;
+		this.globalMeasures = global.toArray(new Measure[global.size()]);
+		this.colonyMeasures = colony.toArray(new Measure[colony.size()]);
+
+		this.data = new DataOutputStream(this.out);
+	}
+
+	/**
+	 * Open a writer on the measures file defined by the parameters of a
+	 * context, and start it.
+	 * 
+	 * @param params
+	 *            the parameters
+	 * @return the started writer
+	 * @throws IOException
+	 *             if the file can not be created
+	 * @throws IllegalArgumentException
+	 *             if a measure is unknown, the file is not created then
+	 */
+	public static MeasuresWriter open(AntParams params) throws IOException {
+		EnumSet<Measure> computed = parse(params.getComputedMeasures());
+		FileOutputStream out = new FileOutputStream(params
+				.getOutputMeasuresPath());
+		boolean started = false;
+
+		try {
+			MeasuresWriter writer = new MeasuresWriter(out, params
+					.getMeasuresFormat(), computed);
+			writer.start();
+			started = true;
+
+			return writer;
+		} finally {
+			if (!started)
+				out.close();
+		}
+	}
+
+	protected static EnumSet<Measure> parse(String measures) {
+		EnumSet<Measure> computed = EnumSet.noneOf(Measure.class);
+
+		if (measures != null)
+			for (String label : measures.trim().split("[,;\\s]+"))
+				if (label.length() > 0)
+					computed.add(Measure.forLabel(label));
+
+		if (computed.isEmpty())
+			computed = EnumSet.allOf(Measure.class);
+
+		return computed;
+	}
+
+	/**
+	 * Sample the measures of the current step of a context, then queue them.
+	 * This has to be called while the context is locked.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 * @throws IOException
+	 *             if the writer has failed
+	 */
+	public void sample(AntContext ctx) throws IOException {
+		ArrayList<Colony> live = new ArrayList<Colony>();
+
+		// Removed colonies leave a hole in the context.
+		for (Colony colony : ctx.eachColony())
+			live.add(colony);
+
+		int colonies = live.size();
+		Sample s = new Sample();
+
+		s.step = ctx.getCurrentStep();
+		s.values = new float[globalMeasures.length];
+		s.colonies = new String[colonies];
+		s.colonyValues = new float[colonies][colonyMeasures.length];
+
+		for (int i = 0; i < globalMeasures.length; i++) {
+			switch (globalMeasures[i]) {
+			case ANTS:
+				s.values[i] = ctx.getPopulationPolicy().getAntCount();
+				break;
+			case NODES:
+				s.values[i] = ctx.getNodeCount();
+				break;
+			case EDGES:
+				s.values[i] = ctx.getInternalGraph().getEdgeCount();
+				break;
+			case COLONIES:
+				s.values[i] = colonies;
+				break;
+			case JUMPS:
+				s.values[i] = ctx.getJumps();
+				break;
+			case SURPOP:
+				s.values[i] = ctx.getSurpop();
+				break;
+			case MIGRATIONS:
+				s.values[i] = ctx.getMigrations();
+				break;
+			case PHEROMONES:
+				for (int c = 0; c < colonies; c++)
+					s.values[i] += ctx.getTotalLoad(live.get(c).getIndex());
+				break;
+			case POOL:
+				s.values[i] = ctx.getPooledAntCount();
+				break;
+			case DOMINANT_CHANGES:
+				s.values[i] = ctx.getDominantChanges();
+				break;
+			default:
+				break;
+			}
+		}
+
+		for (int c = 0; c < colonies; c++) {
+			Colony colony = live.get(c);
+			s.colonies[c] = colony.getName();
+
+			for (int i = 0; i < colonyMeasures.length; i++) {
+				switch (colonyMeasures[i]) {
+				case COLONY_ANTS:
+					s.colonyValues[c][i] = colony.getAntCount();
+					break;
+				case COLONY_JUMPS:
+					s.colonyValues[c][i] = ctx.getJumps(colony);
+					break;
+				case COLONY_PHEROMONES:
+					s.colonyValues[c][i] = ctx.getTotalLoad(colony.getIndex());
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		write(s);
+	}
+
+	protected void writeHeader() throws IOException {
+		if (format == AntParams.MeasuresFormat.CSV) {
+			out.write("step,measure,colony,value\n".getBytes(UTF8));
+		} else {
+			data.writeInt(MAGIC);
+			data.writeShort(VERSION);
+			data.writeByte(globalMeasures.length + colonyMeasures.length);
+
+			for (Measure m : globalMeasures)
+				data.writeUTF(m.label);
+			for (Measure m : colonyMeasures)
+				data.writeUTF(m.label);
+		}
+	}
+
+	protected void writeItem(Sample s) throws IOException {
+		if (format == AntParams.MeasuresFormat.CSV)
+			writeCSV(s);
+		else
+			writeBinary(s);
+	}
+
+	protected void writeCSV(Sample s) throws IOException {
+		text.setLength(0);
+
+		for (int i = 0; i < globalMeasures.length; i++)
+			writeCSVLine(s.step, globalMeasures[i], "", s.values[i]);
+
+		for (int c = 0; c < s.colonies.length; c++)
+			for (int i = 0; i < colonyMeasures.length; i++)
+				writeCSVLine(s.step, colonyMeasures[i], s.colonies[c],
+						s.colonyValues[c][i]);
+
+		out.write(text.toString().getBytes(UTF8));
+	}
+
+	protected void writeCSVLine(int step, Measure m, String colony, float value) {
+		text.append(step).append(',').append(m.label).append(',').append(
+				colony).append(',').append(value).append('\n');
+	}
+
+	protected void writeBinary(Sample s) throws IOException {
+		for (int c = 0; c < s.colonies.length; c++) {
+			if (c >= declared.size() || !s.colonies[c].equals(declared.get(c))) {
+				data.writeByte(COLONY_RECORD);
+				data.writeShort(c);
+				data.writeUTF(s.colonies[c]);
+
+				if (c < declared.size())
+					declared.set(c, s.colonies[c]);
+				else
+					declared.add(s.colonies[c]);
+			}
+		}
+
+		data.writeByte(SAMPLE_RECORD);
+		data.writeInt(s.step);
+
+		for (int i = 0; i < s.values.length; i++)
+			data.writeFloat(s.values[i]);
+
+		data.writeShort(s.colonies.length);
+
+		for (int c = 0; c < s.colonies.length; c++)
+			for (int i = 0; i < colonyMeasures.length; i++)
+				data.writeFloat(s.colonyValues[c][i]);
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+/**
+ * Stop a run when a convergence metric stays below a threshold during some
+ * consecutive steps. The criterion checks one of the following metrics :
+ * <ul>
+ * <li>{@link Metric#DOMINANT_CHANGES}, number of nodes whose dominant colony
+ * changed during the last step, see {@link AntContext#getDominantChanges()}.
+ * It is maintained by the context while stepping, so checking it costs
+ * nothing ;</li>
+ * <li>{@link Metric#PHEROMONE_DELTA}, sum over the elements and the markers
+ * of the change of the loads during the last step, divided by the sum of the
+ * loads. Loads of the previous step are kept by the criterion, checking it
+ * costs a pass over the graph.</li>
+ * </ul>
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class MetricConvergence implements ConvergenceCriterion {
+	public static enum Metric {
+		DOMINANT_CHANGES, PHEROMONE_DELTA
+	}
+
+	protected final Metric metric;
+
+	protected final double threshold;
+
+	/**
+	 * Number of consecutive steps for which the metric has to be below the
+	 * threshold.
+	 */
+	protected final int patience;
+
+	/**
+	 * Number of consecutive steps for which the metric has been below the
+	 * threshold so far.
+	 */
+	protected int quiet;
+
+	/**
+	 * Loads seen at the last check, indexed by element index times markers
+	 * count plus marker.
+	 */
+	protected float[] nodeLoads;
+	protected float[] edgeLoads;
+	protected int markers;
+
+	/**
+	 * Adjacency of the graph at the last check. The graph builds a new one
+	 * after each change of its topology, which may also change the indices
+	 * of the elements.
+	 */
+	protected CompactAdjacency adjacency;
+
+	/**
+	 * New criterion.
+	 * 
+	 * @param metric
+	 *            the metric to check
+	 * @param threshold
+	 *            the run stops when the metric is below this value
+	 * @param patience
+	 *            number of consecutive steps for which the metric has to be
+	 *            below the threshold, at least 1
+	 */
+	public MetricConvergence(Metric metric, double threshold, int patience) {
+		this.metric = metric;
+		this.threshold = threshold;
+		this.patience = Math.max(1, patience);
+	}
+
+	public MetricConvergence(Metric metric, double threshold) {
+		this(metric, threshold, 1);
+	}
+
+	public void reset(AntContext ctx) {
+		quiet = 0;
+		nodeLoads = null;
+		edgeLoads = null;
+		adjacency = null;
+	}
+
+	public boolean isConverged(AntContext ctx) {
+		if (getValue(ctx) < threshold)
+			quiet++;
+		else
+			quiet = 0;
+
+		return quiet >= patience;
+	}
+
+	/**
+	 * Current value of the metric.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 * @return the value of the metric for the last step
+	 */
+	public double getValue(AntContext ctx) {
+		switch (metric) {
+		case DOMINANT_CHANGES:
+			return ctx.getDominantChanges();
+		case PHEROMONE_DELTA:
+			return getPheromoneDelta(ctx);
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Relative change of the loads of each element since the last check. The
+	 * loads are then kept for the next check.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 * @return the relative change, infinite if there is no previous loads to
+	 *         compare with, or if the topology of the graph changed
+	 */
+	protected double getPheromoneDelta(AntContext ctx) {
+		AntGraph graph = ctx.getInternalGraph();
+		CompactAdjacency a = graph.getAdjacency();
+		int m = Math.max(1, ctx.getColonyCount());
+		int nodes = graph.getNodeCount() * m;
+		int edges = graph.getEdgeCount() * m;
+		boolean compare = nodeLoads != null && adjacency == a && markers == m;
+
+		if (!compare) {
+			// First check, or the graph or the colonies changed.
+			nodeLoads = new float[nodes];
+			edgeLoads = new float[edges];
+			markers = m;
+			adjacency = a;
+		}
+
+		double[] sums = new double[2];
+
+		for (AntNode n : ctx.eachNode())
+			compare(n.getPheromones(), n.getIndex() * m, nodeLoads, sums);
+
+		for (AntEdge e : ctx.eachEdge())
+			compare(e.getPheromones(), e.getIndex() * m, edgeLoads, sums);
+
+		if (!compare)
+			return Double.POSITIVE_INFINITY;
+
+		return sums[1] > 0 ? sums[0] / sums[1] : 0;
+	}
+
+	/**
+	 * Add the change of the loads of an element to sums[0] and its loads to
+	 * sums[1], then store its loads.
+	 */
+	protected void compare(Pheromones pheromones, int offset, float[] last,
+			double[] sums) {
+		for (int i = 0; i < markers; i++) {
+			float load = pheromones.getLoad(i);
+
+			sums[0] += Math.abs(load - last[offset + i]);
+			sums[1] += load;
+			last[offset + i] = load;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * This file is part of AntCo2.
+ *
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Run the phases of a step on a fork-join pool. Ants, active edges and
+ * active nodes are split in chunks of {@link AntParams#getChunkSize()} elements. Each chunk of
+ * ants records its side effects in its own {@link StepBuffer}, buffers are
+ * merged in chunk order once all the ants have been stepped, so the commit
+ * semantics are the same than the sequential step.
+ *
+ * @author adutot, gsavin
+ *
+ */
+class ParallelStep {
+	static enum Phase {
+		ANTS, EDGES, NODES
+	}
+
+	/**
+	 * Task stepping a range of chunks.
+	 */
+	class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = -5170329178735634417L;
+
+		final Phase phase;
+		final int from;
+		final int to;
+
+		ChunkTask(Phase phase, int from, int to) {
+			this.phase = phase;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ChunkTask(phase, from, middle), new ChunkTask(
+						phase, middle, to));
+			} else if (to > from) {
+				switch (phase) {
+				case ANTS:
+					stepAnts(from);
+					break;
+				case EDGES:
+					stepEdges(from);
+					break;
+				case NODES:
+					stepNodes(from);
+					break;
+				}
+			}
+		}
+	}
+
+	protected final AntContext ctx;
+
+	protected final ForkJoinPool pool;
+
+	protected final int chunkSize;
+
+	/**
+	 * Buffer of the chunk being run by the current thread.
+	 */
+	protected final ThreadLocal<StepBuffer> current = new ThreadLocal<StepBuffer>();
+
+	/**
+	 * One buffer per ant chunk, reused from one step to another.
+	 */
+	protected StepBuffer[] buffers = new StepBuffer[0];
+
+	/**
+	 * Colony and first ant index of each ant chunk.
+	 */
+	protected Colony[] chunkColonies = new Colony[0];
+	protected int[] chunkStarts = new int[0];
+	protected int chunkCount;
+
+	ParallelStep(AntContext ctx, int parallelism, int chunkSize) {
+		this.ctx = ctx;
+		this.pool = new ForkJoinPool(parallelism);
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	/**
+	 * Buffer in which the current thread has to record its side effects, or
+	 * null if the current thread is not stepping ants.
+	 *
+	 * @return the current buffer
+	 */
+	StepBuffer currentBuffer() {
+		return current.get();
+	}
+
+	/**
+	 * Step the ants and merge their buffers. Colonies have to be committed
+	 * before.
+	 */
+	void stepAnts() {
+		prepareAntChunks();
+		pool.invoke(new ChunkTask(Phase.ANTS, 0, chunkCount));
+
+		for (int i = 0; i < chunkCount; i++)
+			buffers[i].merge(ctx);
+	}
+
+	/**
+	 * Step the active edges, ants have to be stepped before.
+	 */
+	void stepEdges() {
+		pool.invoke(new ChunkTask(Phase.EDGES, 0, chunks(ctx.activeEdgeCount)));
+	}
+
+	/**
+	 * Step the active nodes, ants have to be stepped before.
+	 */
+	void stepNodes() {
+		pool.invoke(new ChunkTask(Phase.NODES, 0, chunks(ctx.activeNodeCount)));
+	}
+
+	/**
+	 * Release workers.
+	 */
+	void shutdown() {
+		pool.shutdown();
+	}
+
+	protected int chunks(int elements) {
+		return (elements + chunkSize - 1) / chunkSize;
+	}
+
+	protected void prepareAntChunks() {
+		chunkCount = 0;
+
+		for (Colony colony : ctx.eachColony())
+			chunkCount += chunks(colony.getAntCount());
+
+		if (chunkColonies.length < chunkCount) {
+			chunkColonies = new Colony[chunkCount];
+			chunkStarts = new int[chunkCount];
+		}
+
+		if (buffers.length < chunkCount) {
+			int n = buffers.length;
+			buffers = Arrays.copyOf(buffers, chunkCount);
+
+			for (int i = n; i < chunkCount; i++)
+				buffers[i] = new StepBuffer();
+		}
+
+		int chunk = 0;
+
+		for (Colony colony : ctx.eachColony()) {
+			for (int i = 0; i < colony.getAntCount(); i += chunkSize) {
+				chunkColonies[chunk] = colony;
+				chunkStarts[chunk] = i;
+				chunk++;
+			}
+		}
+	}
+
+	protected void stepAnts(int chunk) {
+		current.set(buffers[chunk]);
+
+		try {
+			chunkColonies[chunk].step(chunkStarts[chunk], chunkStarts[chunk]
+					+ chunkSize);
+		} finally {
+			current.remove();
+		}
+	}
+
+	protected void stepEdges(int chunk) {
+		int end = Math.min(ctx.activeEdgeCount, (chunk + 1) * chunkSize);
+
+		for (int i = chunk * chunkSize; i < end; i++)
+			ctx.activeEdges[i].step(ctx);
+	}
+
+	protected void stepNodes(int chunk) {
+		int end = Math.min(ctx.activeNodeCount, (chunk + 1) * chunkSize);
+
+		for (int i = chunk * chunkSize; i < end; i++)
+			ctx.activeNodes[i].step(ctx);
+	}
+}
@@ -1,5 +1,25 @@
 package org.graphstream.algorithm.myrmex;
 
 public interface Pheromonable {
+	/**
+	 * Pheromones of the element, to be read. This may be the shared
+	 * {@link Pheromones#EMPTY} if nothing has been dropped on the element, or
+	 * if its pheromones have evaporated. The empty pheromones throw an
+	 * {@link IllegalStateException} on drops : code which used to drop on
+	 * {@code getPheromones()} has to drop on {@link #ensurePheromones()}.
+	 * 
+	 * @return pheromones of the element
+	 */
 	Pheromones getPheromones();
+
+	/**
+	 * Pheromones of the element, created if the element has none. Drops have
+	 * to be done on these pheromones. The element is activated, so what is
+	 * dropped is committed at the end of the current step. This must not be
+	 * called while ants are stepped in parallel, ants drop through
+	 * {@link Ant#drop(Pheromonable, Pheromone)}.
+	 * 
+	 * @return pheromones owned by the element
+	 */
+	Pheromones ensurePheromones();
 }
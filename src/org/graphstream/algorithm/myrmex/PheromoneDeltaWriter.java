@@ -0,0 +1,430 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Write the changes of the pheromone loads, step by step. A load is written
+ * only if it differs from the last value written for the same element and
+ * marker of more than {@link AntParams#getDeltaTolerance()}. Changes are
+ * collected on the step thread, while the context is locked, and are encoded
+ * and written by a background thread.
+ * 
+ * Only the elements which may have changed are visited : the elements
+ * activated during the step, the active ones and the ones whose last written
+ * loads are not null. The cost of a step is then proportional to the number of
+ * elements carrying pheromones, not to the size of the graph.
+ * 
+ * Two formats are available. DGS files can be replayed by GraphStream : each
+ * step is a "st" event followed by "cn" and "ce" events setting the
+ * "pheromone.&lt;colony&gt;" attributes of the changed nodes and edges.
+ * Binary files start with the int {@link #MAGIC} and the short
+ * {@link #VERSION}. Follow records, each one starting with a byte tag :
+ * <ul>
+ * <li>{@link #COLONY_RECORD}, short marker then UTF name of a colony, written
+ * before the first change of the colony ;</li>
+ * <li>{@link #NODE_RECORD} and {@link #EDGE_RECORD}, int index then UTF id of
+ * an element, written before the first change of the element ;</li>
+ * <li>{@link #STEP_RECORD}, int step then int count of changes, followed for
+ * each change by the byte kind of the element (node or edge record tag), its
+ * int index, the short marker and the float load.</li>
+ * </ul>
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class PheromoneDeltaWriter extends AsyncWriter<PheromoneDeltaWriter.Delta> {
+	/**
+	 * Changes of a step, grouped by element.
+	 */
+	static class Delta {
+		int step;
+		String[] colonies;
+		int count;
+		Pheromonable[] elements;
+		String[] ids;
+		int[] markers;
+		float[] loads;
+	}
+
+	public static final int MAGIC = 0x4D594450;
+	public static final short VERSION = 1;
+	public static final byte COLONY_RECORD = 1;
+	public static final byte NODE_RECORD = 2;
+	public static final byte EDGE_RECORD = 3;
+	public static final byte STEP_RECORD = 4;
+
+	/**
+	 * Maximum number of steps waiting to be written.
+	 */
+	public static final int QUEUE_CAPACITY = 256;
+
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+	protected final AntParams.DeltaFormat format;
+
+	protected final float tolerance;
+
+	/**
+	 * Last loads written for each element, indexed by marker. Elements leave
+	 * this map once all their written loads are null.
+	 */
+	protected final IdentityHashMap<Pheromonable, float[]> written = new IdentityHashMap<Pheromonable, float[]>();
+
+	/**
+	 * Elements activated since the last sample.
+	 */
+	protected final ArrayList<Pheromonable> touched = new ArrayList<Pheromonable>();
+
+	/**
+	 * Elements already visited by the current sample.
+	 */
+	protected final IdentityHashMap<Pheromonable, Boolean> visited = new IdentityHashMap<Pheromonable, Boolean>();
+
+	protected final DataOutputStream data;
+
+	/**
+	 * Event buffer of the DGS format.
+	 */
+	protected final StringBuilder text = new StringBuilder();
+
+	/**
+	 * Colonies names and elements ids already declared by the writer thread.
+	 */
+	protected final ArrayList<String> declared = new ArrayList<String>();
+	protected final HashMap<String, Integer> nodes = new HashMap<String, Integer>();
+	protected final HashMap<String, Integer> edges = new HashMap<String, Integer>();
+
+	/**
+	 * Changes being collected by the current sample.
+	 */
+	protected Delta delta;
+
+	/**
+	 * New writer.
+	 * 
+	 * @param out
+	 *            stream to write to
+	 * @param format
+	 *            format of the output
+	 * @param tolerance
+	 *            minimal change of a load to be written
+	 */
+	public PheromoneDeltaWriter(OutputStream out,
+			AntParams.DeltaFormat format, float tolerance) {
+		super("myrmex-pheromones", out, QUEUE_CAPACITY);
+
+		this.format = format;
+		this.tolerance = tolerance;
+		this.data = new DataOutputStream(this.out);
+	}
+
+	/**
+	 * Open a writer on the pheromones file defined by the parameters of a
+	 * context, and start it.
+	 * 
+	 * @param params
+	 *            the parameters
+	 * @return the started writer
+	 * @throws IOException
+	 *             if the file can not be created
+	 */
+	public static PheromoneDeltaWriter open(AntParams params)
+			throws IOException {
+		PheromoneDeltaWriter writer = new PheromoneDeltaWriter(
+				new FileOutputStream(params.getOutputDeltaPath()), params
+						.getDeltaFormat(), params.getDeltaTolerance());
+		writer.start();
+
+		return writer;
+	}
+
+	/**
+	 * Notify the writer that the loads of an element may change. This is
+	 * called by the context when the element becomes active.
+	 * 
+	 * @param element
+	 *            the activated element
+	 */
+	public void touch(Pheromonable element) {
+		touched.add(element);
+	}
+
+	/**
+	 * Notify the writer that an element has been removed from the graph. Its
+	 * loads are not written anymore.
+	 * 
+	 * @param element
+	 *            the removed element
+	 */
+	public void forget(Pheromonable element) {
+		written.remove(element);
+	}
+
+	/**
+	 * Forget all the elements, after the graph has been cleared.
+	 */
+	public void clear() {
+		written.clear();
+		touched.clear();
+	}
+
+	/**
+	 * Collect the changes of the current step of a context, then queue them.
+	 * This has to be called while the context is locked.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 * @throws IOException
+	 *             if the writer has failed
+	 */
+	public void sample(AntContext ctx) throws IOException {
+		int markers = 0;
+
+		for (Colony colony : ctx.eachColony())
+			markers = Math.max(markers, colony.getIndex() + 1);
+
+		delta = new Delta();
+		delta.step = ctx.getCurrentStep();
+		delta.colonies = new String[markers];
+		delta.elements = new Pheromonable[16];
+		delta.ids = new String[16];
+		delta.markers = new int[16];
+		delta.loads = new float[16];
+
+		for (Colony colony : ctx.eachColony())
+			delta.colonies[colony.getIndex()] = colony.getName();
+
+		for (int i = 0; i < touched.size(); i++)
+			visit(touched.get(i), markers);
+
+		for (int i = 0; i < ctx.activeEdgeCount; i++)
+			visit(ctx.activeEdges[i], markers);
+
+		for (int i = 0; i < ctx.activeNodeCount; i++)
+			visit(ctx.activeNodes[i], markers);
+
+		Iterator<Map.Entry<Pheromonable, float[]>> it = written.entrySet()
+				.iterator();
+
+		while (it.hasNext()) {
+			Map.Entry<Pheromonable, float[]> entry = it.next();
+
+			if (!visited.containsKey(entry.getKey())
+					&& compare(entry.getKey(), entry.getValue(), markers))
+				it.remove();
+		}
+
+		touched.clear();
+		visited.clear();
+
+		if (delta.count > 0)
+			write(delta);
+
+		delta = null;
+	}
+
+	protected void visit(Pheromonable element, int markers) {
+		if (visited.put(element, Boolean.TRUE) != null)
+			return;
+
+		float[] last = written.get(element);
+
+		if (last == null) {
+			last = new float[markers];
+
+			if (!compare(element, last, markers))
+				written.put(element, last);
+		} else if (compare(element, last, markers)) {
+			written.remove(element);
+		}
+	}
+
+	/**
+	 * Compare the loads of an element to the last written ones, and record
+	 * the changes.
+	 * 
+	 * @return true if all the written loads of the element are now null
+	 */
+	protected boolean compare(Pheromonable element, float[] last, int markers) {
+		Pheromones p = element.getPheromones();
+		boolean cleared = true;
+
+		for (int m = 0; m < markers; m++) {
+			float load = p == null ? 0 : p.getLoad(m);
+			float previous = m < last.length ? last[m] : 0;
+
+			// Null loads are always written, so readers do not keep stale
+			// values.
+			if (Math.abs(load - previous) > tolerance
+					|| (load == 0 && previous != 0)) {
+				if (m >= last.length) {
+					last = Arrays.copyOf(last, markers);
+					written.put(element, last);
+				}
+
+				last[m] = load;
+				add(element, m, load);
+			}
+
+			if (m < last.length && last[m] != 0)
+				cleared = false;
+		}
+
+		return cleared;
+	}
+
+	protected void add(Pheromonable element, int marker, float load) {
+		if (delta.count == delta.loads.length) {
+			int n = delta.count * 2;
+			delta.elements = Arrays.copyOf(delta.elements, n);
+			delta.ids = Arrays.copyOf(delta.ids, n);
+			delta.markers = Arrays.copyOf(delta.markers, n);
+			delta.loads = Arrays.copyOf(delta.loads, n);
+		}
+
+		delta.elements[delta.count] = element;
+		delta.ids[delta.count] = element instanceof AntEdge ? ((AntEdge) element)
+				.getId()
+				: ((AntNode) element).getId();
+		delta.markers[delta.count] = marker;
+		delta.loads[delta.count] = load;
+		delta.count++;
+	}
+
+	protected void writeHeader() throws IOException {
+		if (format == AntParams.DeltaFormat.DGS) {
+			out.write("DGS004\n\"myrmex\" 0 0\n".getBytes(UTF8));
+		} else {
+			data.writeInt(MAGIC);
+			data.writeShort(VERSION);
+		}
+	}
+
+	protected void writeItem(Delta d) throws IOException {
+		if (format == AntParams.DeltaFormat.DGS)
+			writeDGS(d);
+		else
+			writeBinary(d);
+	}
+
+	protected void writeDGS(Delta d) throws IOException {
+		text.setLength(0);
+		text.append("st ").append(d.step).append('\n');
+
+		for (int i = 0; i < d.count; i++) {
+			if (i == 0 || d.elements[i] != d.elements[i - 1]) {
+				if (i > 0)
+					text.append('\n');
+
+				text.append(d.elements[i] instanceof AntEdge ? "ce " : "cn ");
+				quote(d.ids[i]);
+			}
+
+			String colony = d.colonies[d.markers[i]];
+
+			text.append(' ');
+			quote("pheromone."
+					+ (colony == null ? Integer.toString(d.markers[i])
+							: colony));
+			text.append('=').append(d.loads[i]);
+		}
+
+		if (d.count > 0)
+			text.append('\n');
+
+		out.write(text.toString().getBytes(UTF8));
+	}
+
+	protected void quote(String s) {
+		text.append('"');
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+
+			if (c == '"' || c == '\\')
+				text.append('\\');
+
+			text.append(c);
+		}
+
+		text.append('"');
+	}
+
+	protected void writeBinary(Delta d) throws IOException {
+		for (int m = 0; m < d.colonies.length; m++) {
+			if (d.colonies[m] == null)
+				continue;
+
+			while (declared.size() <= m)
+				declared.add(null);
+
+			if (!d.colonies[m].equals(declared.get(m))) {
+				data.writeByte(COLONY_RECORD);
+				data.writeShort(m);
+				data.writeUTF(d.colonies[m]);
+				declared.set(m, d.colonies[m]);
+			}
+		}
+
+		int[] indices = new int[d.count];
+
+		for (int i = 0; i < d.count; i++) {
+			boolean edge = d.elements[i] instanceof AntEdge;
+			HashMap<String, Integer> ids = edge ? edges : nodes;
+			Integer index = ids.get(d.ids[i]);
+
+			if (index == null) {
+				index = ids.size();
+				ids.put(d.ids[i], index);
+
+				data.writeByte(edge ? EDGE_RECORD : NODE_RECORD);
+				data.writeInt(index);
+				data.writeUTF(d.ids[i]);
+			}
+
+			indices[i] = index;
+		}
+
+		data.writeByte(STEP_RECORD);
+		data.writeInt(d.step);
+		data.writeInt(d.count);
+
+		for (int i = 0; i < d.count; i++) {
+			data.writeByte(d.elements[i] instanceof AntEdge ? EDGE_RECORD
+					: NODE_RECORD);
+			data.writeInt(indices[i]);
+			data.writeShort(d.markers[i]);
+			data.writeFloat(d.loads[i]);
+		}
+	}
+}
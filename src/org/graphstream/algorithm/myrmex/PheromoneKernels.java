@@ -0,0 +1,198 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Kernels applied to contiguous arrays of pheromone loads, such as the rows of
+ * a {@link PheromoneMatrix}. Arrays are byte buffers of floats in the native
+ * byte order, designated by float indices.
+ * 
+ * Two implementations are available. {@link #SCALAR} runs everywhere. The
+ * vector implementation uses the incubating Vector API of the JDK, it is
+ * compiled by the "vector" build profile and needs a JVM started with
+ * {@code --add-modules jdk.incubator.vector}. {@link #getDefault()} returns
+ * it when it can be loaded and gives the results of the scalar kernels on a
+ * small probe, and the scalar kernels otherwise. Both give the same loads ;
+ * sums may differ by the float rounding, as values are not added in the same
+ * order.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public abstract class PheromoneKernels {
+	/**
+	 * Name of the class of the vector kernels.
+	 */
+	public static final String VECTOR_KERNELS = "org.graphstream.algorithm.myrmex.VectorKernels";
+
+	/**
+	 * Kernels written with plain loops.
+	 */
+	public static final PheromoneKernels SCALAR = new PheromoneKernels() {
+		public void evaporate(ByteBuffer loads, int n, float rho) {
+			for (int i = 0; i < n; i++)
+				loads.putFloat(i << 2, loads.getFloat(i << 2) * rho);
+		}
+
+		public void evaporateAndDeposit(ByteBuffer loads,
+				ByteBuffer deposits, int n, float rho) {
+			for (int i = 0; i < n; i++) {
+				int b = i << 2;
+				loads.putFloat(b, loads.getFloat(b) * rho + deposits.getFloat(b));
+				deposits.putFloat(b, 0);
+			}
+		}
+
+		public float sum(ByteBuffer loads, int from, int n) {
+			float t = 0;
+
+			for (int i = from; i < from + n; i++)
+				t += loads.getFloat(i << 2);
+
+			return t;
+		}
+
+		public String getName() {
+			return "scalar";
+		}
+	};
+
+	private static PheromoneKernels defaultKernels;
+
+	/**
+	 * The fastest kernels available on this JVM.
+	 * 
+	 * @return the vector kernels if they can be loaded and pass the probe,
+	 *         else the scalar ones
+	 */
+	public static synchronized PheromoneKernels getDefault() {
+		if (defaultKernels == null) {
+			defaultKernels = SCALAR;
+
+			try {
+				PheromoneKernels vector = (PheromoneKernels) Class.forName(
+						VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+
+				// The Vector API classes are only linked when first used.
+				if (probe(vector))
+					defaultKernels = vector;
+			} catch (ReflectiveOperationException e) {
+				// Not compiled in, or not accessible.
+			} catch (LinkageError e) {
+				// The Vector API module is not available.
+			} catch (RuntimeException e) {
+				// The Vector API does not support this platform.
+			}
+		}
+
+		return defaultKernels;
+	}
+
+	/**
+	 * Run each kernel once on a small buffer and compare the results with the
+	 * scalar kernels. Values are small integers and halves, so sums are exact
+	 * whatever the order of the additions, and the length is not a multiple
+	 * of a vector length, so the tail loops are run too.
+	 * 
+	 * @param kernels
+	 *            the kernels to check
+	 * @return true if the kernels give the same results than the scalar ones
+	 */
+	protected static boolean probe(PheromoneKernels kernels) {
+		int n = 67;
+		ByteBuffer[] buffers = new ByteBuffer[4];
+
+		// Buffers 0 and 1 are the deposits, 2 and 3 the loads, of the kernels
+		// and of the scalar kernels.
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = ByteBuffer.allocateDirect(n << 2).order(
+					ByteOrder.nativeOrder());
+
+			for (int j = 0; j < n; j++)
+				buffers[i].putFloat(j << 2, i < 2 ? j : n - j);
+		}
+
+		kernels.evaporate(buffers[0], n, 0.5f);
+		SCALAR.evaporate(buffers[1], n, 0.5f);
+		kernels.evaporateAndDeposit(buffers[2], buffers[0], n, 0.5f);
+		SCALAR.evaporateAndDeposit(buffers[3], buffers[1], n, 0.5f);
+
+		for (int j = 0; j < n; j++)
+			if (buffers[2].getFloat(j << 2) != buffers[3].getFloat(j << 2)
+					|| buffers[0].getFloat(j << 2) != 0)
+				return false;
+
+		return kernels.sum(buffers[2], 1, n - 1) == SCALAR.sum(buffers[3], 1,
+				n - 1);
+	}
+
+	/**
+	 * Multiply loads by the persistence factor.
+	 * 
+	 * @param loads
+	 *            the loads
+	 * @param n
+	 *            number of floats, from the start of the buffer
+	 * @param rho
+	 *            persistence factor
+	 */
+	public abstract void evaporate(ByteBuffer loads, int n, float rho);
+
+	/**
+	 * Multiply loads by the persistence factor and add the deposits in the same
+	 * pass, then clear the deposits. Loads are rounded after the
+	 * multiplication, as by {@link #evaporate(ByteBuffer, int, float)}.
+	 * 
+	 * @param loads
+	 *            the loads
+	 * @param deposits
+	 *            deposits, with the same layout than the loads
+	 * @param n
+	 *            number of floats, from the start of the buffers
+	 * @param rho
+	 *            persistence factor
+	 */
+	public abstract void evaporateAndDeposit(ByteBuffer loads,
+			ByteBuffer deposits, int n, float rho);
+
+	/**
+	 * Sum a range of loads.
+	 * 
+	 * @param loads
+	 *            the loads
+	 * @param from
+	 *            index of the first float
+	 * @param n
+	 *            number of floats
+	 * @return the sum
+	 */
+	public abstract float sum(ByteBuffer loads, int from, int n);
+
+	/**
+	 * Name of the implementation, for reports.
+	 * 
+	 * @return the name of the kernels
+	 */
+	public abstract String getName();
+}
@@ -0,0 +1,356 @@
+/*
+ * This file is part of AntCo2.
+ *
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Pheromone loads of a whole set of elements (all the edges or all the nodes),
+ * stored outside of the heap. Each element owns a slot, which is a row of the
+ * matrix, and each marker is a column. Elements access their row through a
+ * {@link Pheromones} view returned by {@link #newPheromones()}.
+ *
+ * Evaporation and commit of the deposits are done for all the rows at once by
+ * {@link #step(float)}, using {@link PheromoneKernels} which may process
+ * several floats per instruction.
+ *
+ * @author adutot, gsavin
+ *
+ */
+public class PheromoneMatrix {
+	/**
+	 * View of a row of the matrix.
+	 */
+	static class MatrixPheromones extends Pheromones {
+		protected final PheromoneMatrix matrix;
+		protected final int slot;
+
+		MatrixPheromones(PheromoneMatrix matrix, int slot) {
+			super(0);
+
+			this.matrix = matrix;
+			this.slot = slot;
+		}
+
+		public void commit() {
+			commitPheromones();
+		}
+
+		public void step(AntContext ctx) {
+			// Evaporation and deposits are handled by the matrix.
+			commitPheromones();
+		}
+
+		public int getMarkerCount() {
+			return matrix.markers;
+		}
+
+		/**
+		 * Loads are evaporated by the matrix, the row only needs to be
+		 * visited to commit pheromone objects.
+		 */
+		public boolean prune(float epsilon) {
+			return pheromonesToProcessCount == 0;
+		}
+
+		/**
+		 * Rows are evaporated by the matrix, they are kept until their
+		 * element is reset or removed.
+		 */
+		public boolean isDiscardable() {
+			return false;
+		}
+
+		public float getTotalLoad() {
+			return matrix.getTotalLoad(slot);
+		}
+
+		public void drop(Pheromone<?> pheromone) {
+			// Grow now, commit may be run concurrently on several rows.
+			matrix.checkMarker(pheromone.getMarker());
+			super.drop(pheromone);
+		}
+
+		public void drop(int marker, float load) {
+			matrix.checkMarker(marker);
+			matrix.deposit(slot, marker, load);
+		}
+
+		protected float load(int marker) {
+			return matrix.getLoad(slot, marker);
+		}
+
+		protected void addLoad(int marker, float value) {
+			matrix.addLoad(slot, marker, value);
+		}
+
+		protected void checkMarker(int marker) {
+			matrix.checkMarker(marker);
+		}
+
+		/**
+		 * Give the slot back to the matrix.
+		 */
+		void release() {
+			matrix.release(slot);
+		}
+	}
+
+	/**
+	 * Maximum number of floats of each buffer, so its size in bytes is an int.
+	 */
+	public static final int MAX_FLOATS = Integer.MAX_VALUE / 4;
+
+	/**
+	 * Loads and deposits, row-major.
+	 */
+	protected FloatBuffer loads;
+	protected FloatBuffer deposits;
+
+	/**
+	 * Storage of the loads and deposits, used by the kernels.
+	 */
+	protected ByteBuffer loadBytes;
+	protected ByteBuffer depositBytes;
+
+	/**
+	 * Kernels used to evaporate and sum the loads.
+	 */
+	protected final PheromoneKernels kernels;
+
+	/**
+	 * Number of columns.
+	 */
+	protected int markers;
+
+	/**
+	 * Number of rows which can be stored without growing.
+	 */
+	protected int capacity;
+
+	/**
+	 * Number of rows used so far, including released rows.
+	 */
+	protected int size;
+
+	/**
+	 * Released rows, ready to be reused.
+	 */
+	protected int[] free = new int[16];
+	protected int freeCount;
+
+	/**
+	 * Set to true if some deposits are waiting for a step.
+	 */
+	protected boolean depositsPending = false;
+
+	/**
+	 * New matrix.
+	 *
+	 * @param markers
+	 *            initial number of markers
+	 * @param capacity
+	 *            initial number of rows
+	 */
+	public PheromoneMatrix(int markers, int capacity) {
+		this(markers, capacity, PheromoneKernels.getDefault());
+	}
+
+	/**
+	 * New matrix using the given kernels.
+	 *
+	 * @param markers
+	 *            initial number of markers
+	 * @param capacity
+	 *            initial number of rows
+	 * @param kernels
+	 *            kernels used to evaporate and sum the loads
+	 */
+	public PheromoneMatrix(int markers, int capacity, PheromoneKernels kernels) {
+		this.markers = Math.max(1, markers);
+		this.capacity = Math.max(16, capacity);
+		this.kernels = kernels;
+		this.loadBytes = allocate(this.capacity * this.markers);
+		this.depositBytes = allocate(this.capacity * this.markers);
+		this.loads = loadBytes.asFloatBuffer();
+		this.deposits = depositBytes.asFloatBuffer();
+	}
+
+	/**
+	 * Create the view of a new row.
+	 *
+	 * @return pheromones stored in the new row
+	 */
+	public Pheromones newPheromones() {
+		return new MatrixPheromones(this, allocateSlot());
+	}
+
+	/**
+	 * Number of markers (columns).
+	 *
+	 * @return markers count
+	 */
+	public int getMarkerCount() {
+		return markers;
+	}
+
+	/**
+	 * Number of rows in use.
+	 *
+	 * @return rows count
+	 */
+	public int getRowCount() {
+		return size - freeCount;
+	}
+
+	/**
+	 * Kernels used by this matrix.
+	 *
+	 * @return the kernels
+	 */
+	public PheromoneKernels getKernels() {
+		return kernels;
+	}
+
+	public float getLoad(int slot, int marker) {
+		return loads.get(slot * markers + marker);
+	}
+
+	public void addLoad(int slot, int marker, float value) {
+		int i = slot * markers + marker;
+		loads.put(i, loads.get(i) + value);
+	}
+
+	public void deposit(int slot, int marker, float value) {
+		int i = slot * markers + marker;
+		deposits.put(i, deposits.get(i) + value);
+		depositsPending = true;
+	}
+
+	public float getTotalLoad(int slot) {
+		return kernels.sum(loadBytes, slot * markers, markers);
+	}
+
+	/**
+	 * Sum of the loads of all the rows.
+	 *
+	 * @return the total load of the matrix
+	 */
+	public float getTotalLoad() {
+		return kernels.sum(loadBytes, 0, size * markers);
+	}
+
+	/**
+	 * Evaporate all the loads, then add the deposits.
+	 *
+	 * @param rho
+	 *            pheromone persistence factor
+	 */
+	public void step(float rho) {
+		int n = size * markers;
+
+		if (depositsPending) {
+			kernels.evaporateAndDeposit(loadBytes, depositBytes, n, rho);
+			depositsPending = false;
+		} else {
+			kernels.evaporate(loadBytes, n, rho);
+		}
+	}
+
+	/**
+	 * Check that the matrix has a column for the given marker.
+	 *
+	 * @param marker
+	 */
+	protected void checkMarker(int marker) {
+		if (marker < 0)
+			throw new InvalidMarkerException();
+
+		if (marker >= markers)
+			resize(capacity, Math.max(marker + 1, (int) Math.min(
+					markers * 2L, MAX_FLOATS / capacity)));
+	}
+
+	protected int allocateSlot() {
+		if (freeCount > 0)
+			return free[--freeCount];
+
+		if (size == capacity) {
+			// Doubling may not fit while a few more rows still do.
+			int newCapacity = (int) Math.min(capacity * 2L, MAX_FLOATS
+					/ markers);
+
+			if (newCapacity <= capacity)
+				throw new OutOfMemoryError("pheromone matrix is too large");
+
+			resize(newCapacity, markers);
+		}
+
+		return size++;
+	}
+
+	protected void release(int slot) {
+		int end = (slot + 1) * markers;
+
+		for (int i = slot * markers; i < end; i++) {
+			loads.put(i, 0);
+			deposits.put(i, 0);
+		}
+
+		if (freeCount == free.length)
+			free = Arrays.copyOf(free, freeCount * 2);
+
+		free[freeCount++] = slot;
+	}
+
+	protected void resize(int newCapacity, int newMarkers) {
+		if ((long) newCapacity * newMarkers > MAX_FLOATS)
+			throw new OutOfMemoryError("pheromone matrix is too large");
+
+		ByteBuffer newLoadBytes = allocate(newCapacity * newMarkers);
+		ByteBuffer newDepositBytes = allocate(newCapacity * newMarkers);
+		FloatBuffer newLoads = newLoadBytes.asFloatBuffer();
+		FloatBuffer newDeposits = newDepositBytes.asFloatBuffer();
+
+		for (int s = 0; s < size; s++) {
+			for (int m = 0; m < markers; m++) {
+				newLoads.put(s * newMarkers + m, loads.get(s * markers + m));
+				newDeposits.put(s * newMarkers + m, deposits.get(s * markers
+						+ m));
+			}
+		}
+
+		loadBytes = newLoadBytes;
+		depositBytes = newDepositBytes;
+		loads = newLoads;
+		deposits = newDeposits;
+		capacity = newCapacity;
+		markers = newMarkers;
+	}
+
+	protected static ByteBuffer allocate(int floats) {
+		return ByteBuffer.allocateDirect(floats * 4).order(
+				ByteOrder.nativeOrder());
+	}
+}
@@ -1,231 +1,354 @@
 package org.graphstream.algorithm.myrmex;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-
+import java.util.Arrays;
+
+/**
+ * Pheromones carried by an element of the graph. Loads are stored in a dense
+ * array indexed by markers. Drops are not applied immediately, they are
+ * accumulated and then merged in the loads by {@link #commit()}.
+ *
+ * Pheromones carrying data can still be dropped with
+ * {@link #drop(Pheromone)}, in which case the first pheromone dropped for a
+ * marker is kept (cloned) and next ones are fused into it. The load of such a
+ * pheromone is the load of its marker here.
+ */
 public class Pheromones {
 	/**
-	 * Pheromone array.
+	 * Total of all pheromones for all colours after the last commit().
 	 */
-	// protected float[] pheromones = new float[1];
+	protected float pheromonesTotal;
 
 	/**
-	 * Temporary pheromone array.
+	 * Pheromone loads, indexed by marker.
 	 */
-	// protected float[] pheromonesTmp = new float[1];
+	protected float[] loads;
 
 	/**
-	 * Total of all pheromones for all colours after the last commit().
+	 * Primitive drops waiting for a commit, indexed by marker.
 	 */
-	protected float pheromonesTotal;
+	protected float[] deposits;
 
 	/**
-	 * Set to true if some inter-step value changed.
+	 * Set to true if some deposits are waiting for a commit.
 	 */
-	// protected boolean commitNeeded = false;
-
-	protected HashMap<Integer, Pheromone<?>> pheromonesM;
-	protected LinkedList<Pheromone<?>> pheromonesToProcess;
+	protected boolean commitNeeded = false;
 
-	protected Pheromones(int count) {
-		// pheromonesTmp = new float[count];
-		// pheromones = new float[count];
+	/**
+	 * Pheromone objects, indexed by marker. They are created for pheromones
+	 * carrying data or when {@link #get(int)} is called.
+	 */
+	protected Pheromone<?>[] pheromonesM;
 
-		// Initialise the pheromones to a very small value to avoid 0.
+	/**
+	 * Pheromone objects dropped and waiting for a commit.
+	 */
+	protected Pheromone<?>[] pheromonesToProcess;
+	protected int pheromonesToProcessCount;
 
+	protected Pheromones(int count) {
+		loads = new float[count];
+		deposits = new float[count];
+		pheromonesM = new Pheromone<?>[count];
+		pheromonesToProcess = new Pheromone<?>[0];
 		pheromonesTotal = 0;
-		/*
-		 * for (int i = 0; i < count; ++i) { float nb = 0.0001f;
-		 * 
-		 * pheromonesTmp[i] = nb; pheromones[i] = nb; pheromonesTotal += nb; }
-		 */
 	}
 
 	public Pheromones(AntContext ctx) {
-		// pheromonesTmp = new float[ctx.getColonyCount()];
-		// pheromones = new float[ctx.getColonyCount()];
+		this(Math.max(1, ctx.getColonyCount()));
+	}
 
-		// Initialise the pheromones to a very small value to avoid 0.
+	/**
+	 * Commit all temporary changes to this object. Drops are added to the
+	 * loads. Commit should only be called at the end of each AntCO� step.
+	 */
+	public void commit() {
+		commitPheromones();
 
-		pheromonesM = new HashMap<Integer, Pheromone<?>>();
-		pheromonesToProcess = new LinkedList<Pheromone<?>>();
-		pheromonesTotal = 0;
-		/*
-		 * for (int i = 0; i < ctx.getColonyCount(); ++i) { float nb =
-		 * ctx.random().nextFloat() * 0.0001f;
-		 * 
-		 * pheromonesTmp[i] = nb; pheromones[i] = nb; pheromonesTotal += nb; }
-		 */
+		if (commitNeeded) {
+			for (int i = 0; i < loads.length; i++) {
+				loads[i] += deposits[i];
+				deposits[i] = 0;
+			}
+
+			commitNeeded = false;
+		}
 	}
 
 	/**
-	 * switch: Commit all temporary changes to this object. The commit operation
-	 * will
-	 * <ul>
-	 * <li>the pheromones;</li>
-	 * </ul>
-	 * Commit should only be called at the end of each AntCO� step.
+	 * Commit the pheromone objects dropped since the last commit.
 	 */
-	public void commit() {
-		/*
-		 * if (commitNeeded) { int n = pheromones.length;
-		 * 
-		 * for (int i = 0; i < n; ++i) { float incr = pheromonesTmp[i];
-		 * 
-		 * pheromones[i] += incr; pheromonesTotal += incr; pheromonesTmp[i] = 0;
-		 * }
-		 * 
-		 * commitNeeded = false; }
-		 */
-		while (pheromonesToProcess.size() > 0) {
-			Pheromone<?> p = pheromonesToProcess.poll();
-
-			if (pheromonesM.containsKey(p.getMarker()))
-				pheromonesM.get(p.getMarker()).fusion(p);
+	protected void commitPheromones() {
+		for (int i = 0; i < pheromonesToProcessCount; i++) {
+			Pheromone<?> p = pheromonesToProcess[i];
+			int marker = p.getMarker();
+
+			pheromonesToProcess[i] = null;
+			checkMarker(marker);
+			checkPheromonesM(marker);
+
+			if (pheromonesM[marker] != null)
+				pheromonesM[marker].fusion(p);
 			else
-				pheromonesM.put(p.getMarker(), p.clone());
+				pheromonesM[marker] = p.clone();
+
+			addLoad(marker, p.getLoad());
 		}
+
+		pheromonesToProcessCount = 0;
 	}
 
 	/**
 	 * Step method for this edge. Pheromones evaporation is done here.
-	 * 
+	 *
 	 * @param ctx
 	 *            ants context
 	 */
 	public void step(AntContext ctx) {
-		/*
-		 * int n = pheromones.length;
-		 * 
-		 * if (n > 0) { // Evaporate the pheromones already present on the edge.
-		 * 
-		 * pheromonesTotal = 0;
-		 * 
-		 * for (int i = 0; i < n; ++i) { pheromones[i] *=
-		 * ctx.getAntParams().rho; pheromonesTotal += pheromones[i]; }
-		 * 
-		 * // Then, and only then, copy pheromones added by ants at the //
-		 * previous // step to the pheromones on the edge.
-		 * 
-		 * }
-		 */
-
-		for (Pheromone<?> p : pheromonesM.values())
-			p.evaporate(ctx.getAntParams().rho);
+		float rho = ctx.getAntParams().rho;
+
+		for (int i = 0; i < loads.length; i++)
+			loads[i] *= rho;
 
 		commit();
 	}
 
 	/**
-	 * Pheromone value for a given colour.
-	 * 
-	 * @param color
-	 *            Colour index.
-	 * @return The pheromone value for a given colour.
+	 * Set the load of a marker, bypassing deposits. This is used to restore
+	 * pheromones, ants have to drop.
+	 *
+	 * @param marker
+	 *            the marker
+	 * @param load
+	 *            the new load
+	 */
+	public void setLoad(int marker, float load) {
+		checkMarker(marker);
+		addLoad(marker, load - load(marker));
+	}
+
+	/**
+	 * Clear the loads which are not greater than epsilon, and forget their
+	 * pheromone objects. This is used by the context to stop stepping
+	 * elements whose pheromones have evaporated.
+	 *
+	 * @param epsilon
+	 *            loads not greater than this are considered null
+	 * @return true if these pheromones have nothing left to evaporate or
+	 *         commit
+	 */
+	public boolean prune(float epsilon) {
+		if (commitNeeded || pheromonesToProcessCount > 0)
+			return false;
+
+		boolean empty = true;
+
+		for (int i = 0; i < loads.length; i++) {
+			if (loads[i] > epsilon)
+				empty = false;
+			else {
+				loads[i] = 0;
+
+				if (i < pheromonesM.length)
+					pheromonesM[i] = null;
+			}
+		}
+
+		return empty;
+	}
+
+	/**
+	 * Check if these pheromones carry nothing, in which case the element
+	 * owning them can go back to {@link #EMPTY}. This is only meaningful
+	 * after a {@link #prune(float)} which returned true.
+	 *
+	 * @return true if these pheromones can be discarded
+	 */
+	public boolean isDiscardable() {
+		for (int i = 0; i < loads.length; i++)
+			if (loads[i] != 0)
+				return false;
+
+		return !commitNeeded && pheromonesToProcessCount == 0;
+	}
+
+	/**
+	 * Pheromone for a given marker. This creates a pheromone object the first
+	 * time it is called for a marker, use {@link #getLoad(int)} to only get
+	 * the load.
+	 *
+	 * @param marker
+	 *            the marker
+	 * @return The pheromone for the marker, or {@link Pheromone#EMPTY}.
 	 */
 	public Pheromone<?> get(int marker) {
-		// if (color >= 0 && pheromones.length > color)
-		// return pheromones[color];
+		if (marker < 0 || marker >= getMarkerCount())
+			return Pheromone.EMPTY;
+
+		float load = load(marker);
+		Pheromone<?> p = marker < pheromonesM.length ? pheromonesM[marker]
+				: null;
+
+		if (p == null) {
+			if (load == 0)
+				return Pheromone.EMPTY;
+
+			checkPheromonesM(marker);
+			p = new Pheromone<Object>(marker, 0);
+			pheromonesM[marker] = p;
+		}
+
+		p.setLoad(load);
+		return p;
+	}
 
-		Pheromone<?> p = pheromonesM.get(marker);
-		return p == null ? Pheromone.EMPTY : p;
+	/**
+	 * Pheromone load for a given marker.
+	 *
+	 * @param marker
+	 *            the marker
+	 * @return the load, 0 if nothing has been dropped for this marker
+	 */
+	public float getLoad(int marker) {
+		if (marker < 0 || marker >= getMarkerCount())
+			return 0;
+
+		return load(marker);
+	}
+
+	/**
+	 * Number of markers this object can currently hold. Markers are between 0
+	 * and this number.
+	 *
+	 * @return markers count
+	 */
+	public int getMarkerCount() {
+		return loads.length;
 	}
 
 	/**
 	 * Pheromone value for all colours.
-	 * 
+	 *
 	 * @return The total pheromone value.
 	 */
 	public float getTotalLoad() {
 		float t = 0;
 
-		for (Pheromone<?> p : pheromonesM.values())
-			t += p.getLoad();
+		for (int i = 0; i < loads.length; i++)
+			t += loads[i];
 
 		return t;
 	}
 
 	/**
-	 * Set the pheromone value for a given colour. If the given colour is null
-	 * all the colours are changed. This directly changes the pheromone, no need
-	 * to commit.
-	 * 
-	 * @param colony
-	 *            Colour index or null for all the colours.
-	 * @param value
-	 *            Value to set.
-	 */
-	/*
-	 * public void set(Colony colony, float value) { if (colony != null) { int
-	 * index = colony.getIndex();
-	 * 
-	 * checkPheromonesArraySizes(index);
-	 * 
-	 * pheromonesTotal -= pheromones[index]; pheromones[index] = value;
-	 * pheromonesTotal += pheromones[index]; } else { Arrays.fill(pheromones,
-	 * value); pheromonesTotal = value * pheromones.length; } }
-	 */
-
-	/**
-	 * Increment the pheromone value for a given colour. If the given colour is
-	 * null all the colours are changed. This change is stored in a temporary
-	 * buffer, you need to call commit() to make it real.
-	 * 
-	 * @param colony
-	 *            Colour index or null for all the colours.
-	 * @param value
-	 *            Value to add.
-	 */
-	/*
-	 * public void incr(Colony colony, float value) { commitNeeded = true;
-	 * 
-	 * if (colony != null) { int index = colony.getIndex();
-	 * 
-	 * checkPheromonesArraySizes(index); pheromonesTmp[index] += value; } else {
-	 * for (int i = 0; i < pheromonesTmp.length; ++i) pheromonesTmp[i] += value;
-	 * } }
+	 * Drop a pheromone object. This is needed for pheromones carrying data,
+	 * plain loads should be dropped with {@link #drop(int, float)}.
+	 *
+	 * @param pheromone
+	 *            the dropped pheromone
 	 */
-
 	public void drop(Pheromone<?> pheromone) {
-		pheromonesToProcess.add(pheromone);
+		if (pheromonesToProcessCount == pheromonesToProcess.length)
+			pheromonesToProcess = Arrays.copyOf(pheromonesToProcess, Math.max(
+					4, pheromonesToProcessCount * 2));
+
+		pheromonesToProcess[pheromonesToProcessCount++] = pheromone;
+	}
+
+	/**
+	 * Drop a load of pheromone for a marker. This does not allocate anything,
+	 * unless the marker has never been seen before.
+	 *
+	 * @param marker
+	 *            the marker
+	 * @param load
+	 *            the dropped load
+	 */
+	public void drop(int marker, float load) {
+		checkMarker(marker);
+		deposits[marker] += load;
+		commitNeeded = true;
 	}
 
 	@SuppressWarnings("unchecked")
 	public <T extends Comparable<T>> T getMinimumData() {
 		T m = null;
 
-		for (Pheromone<?> p : pheromonesM.values()) {
-			T d = (T) p.getData();
+		for (int i = 0; i < pheromonesM.length; i++) {
+			if (pheromonesM[i] == null)
+				continue;
+
+			T d = (T) pheromonesM[i].getData();
 
 			if (d != null)
-				m = ( m == null || m.compareTo(d) > 0 ) ? d : m;
+				m = (m == null || m.compareTo(d) > 0) ? d : m;
 		}
 
 		return m;
 	}
 
 	/**
-	 * Check that the antCountPerColor arrays are large enough.
-	 * 
-	 * @param index
+	 * Load of a marker. The marker is supposed to be valid.
+	 *
+	 * @param marker
+	 *            the marker
+	 * @return the load of the marker
 	 */
-	/*
-	 * protected void checkPheromonesArraySizes(int index) { if (index >=
-	 * pheromones.length) { int n = pheromones.length;
-	 * 
-	 * pheromonesTmp = Arrays.copyOf(pheromonesTmp, index + 1); pheromones =
-	 * Arrays.copyOf(pheromones, index + 1);
-	 * 
-	 * Arrays.fill(pheromones, n, index + 1, 0.000001f); pheromonesTotal +=
-	 * 0.000001f * (index + 1 - n); } }
+	protected float load(int marker) {
+		return loads[marker];
+	}
+
+	/**
+	 * Add directly a load to a marker, without waiting for a commit. The
+	 * marker is supposed to be valid.
+	 *
+	 * @param marker
+	 *            the marker
+	 * @param value
+	 *            load to add
 	 */
+	protected void addLoad(int marker, float value) {
+		loads[marker] += value;
+	}
 
+	/**
+	 * Check that the load arrays are large enough to hold the given marker.
+	 *
+	 * @param marker
+	 */
+	protected void checkMarker(int marker) {
+		if (marker < 0)
+			throw new InvalidMarkerException();
+
+		if (marker >= loads.length) {
+			loads = Arrays.copyOf(loads, marker + 1);
+			deposits = Arrays.copyOf(deposits, marker + 1);
+		}
+	}
+
+	/**
+	 * Check that the pheromone objects array is large enough to hold the
+	 * given marker.
+	 *
+	 * @param marker
+	 */
+	protected void checkPheromonesM(int marker) {
+		if (marker >= pheromonesM.length)
+			pheromonesM = Arrays.copyOf(pheromonesM, marker + 1);
+	}
+
+	/**
+	 * Pheromones of the elements on which nothing has been dropped. They are
+	 * shared, so drops are refused rather than lost.
+	 */
 	private static class EmptyPheromones extends Pheromones {
 
 		EmptyPheromones() {
 			super(0);
 		}
 
+		public void commit() {
+		}
+
 		public void step(AntContext ctx) {
 		}
 
@@ -233,17 +356,35 @@ public class Pheromones {
 			return Pheromone.EMPTY;
 		}
 
+		public float getLoad(int marker) {
+			return 0;
+		}
+
 		public float getTotalLoad() {
 			return 0;
 		}
 
 		public void drop(Pheromone<?> p) {
+			throw shared();
+		}
+
+		public void drop(int marker, float load) {
+			throw shared();
+		}
+
+		public void setLoad(int marker, float load) {
+			if (load != 0)
+				throw shared();
+		}
+
+		private IllegalStateException shared() {
+			return new IllegalStateException(
+					"element has no pheromones, drop on ensurePheromones()");
+		}
+
+		public boolean prune(float epsilon) {
+			return true;
 		}
-		/*
-		 * public void set(Colony colony, float value) { }
-		 * 
-		 * public void incr(Colony colony, float value) { }
-		 */
 	}
 
 	public static final Pheromones EMPTY = new EmptyPheromones();
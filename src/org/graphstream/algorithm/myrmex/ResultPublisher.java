@@ -0,0 +1,371 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+import org.graphstream.graph.Element;
+import org.graphstream.graph.Graph;
+
+/**
+ * Write the results of the ants back to a graph, as attributes of its nodes
+ * and edges :
+ * <ul>
+ * <li>"&lt;prefix&gt;colony", name of the dominant colony : the colony with
+ * the most ants on a node, or with the greatest load on an edge ; the
+ * attribute is removed when there is none ;</li>
+ * <li>"&lt;prefix&gt;ants", number of ants on a node ;</li>
+ * <li>"&lt;prefix&gt;pheromone", total pheromone load of an element on which
+ * pheromones are dropped.</li>
+ * </ul>
+ * 
+ * Values are compared to the last published ones, and an attribute is only set
+ * if its value changed of more than {@link AntParams#getPublishThreshold()}, so
+ * the sinks of the graph only receive meaningful changes. Changes are
+ * collected while the context is locked, then applied to the graph in one
+ * batch. The graph is written by the thread calling {@link #publish(Graph)}.
+ * 
+ * The first collection goes over the whole graph. The next ones only visit
+ * the elements activated since the previous one, the active elements and the
+ * elements whose published values are not null, which the context notifies
+ * through {@link #touch(Pheromonable)} and {@link #forget(Pheromonable)}.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class ResultPublisher {
+	/**
+	 * Last values published for an element.
+	 */
+	protected static class Published {
+		int colony = -1;
+		float ants;
+		float load;
+		int pass;
+	}
+
+	protected final AntContext ctx;
+
+	protected final String colonyAttribute;
+	protected final String antsAttribute;
+	protected final String pheromoneAttribute;
+
+	protected float threshold;
+
+	/**
+	 * Last published values, by element. Elements enter this map with their
+	 * first change and leave it once all their published values are null, or
+	 * when they are removed from the graph.
+	 */
+	protected final IdentityHashMap<Pheromonable, Published> published = new IdentityHashMap<Pheromonable, Published>();
+
+	/**
+	 * Elements activated since the last collection.
+	 */
+	protected final ArrayList<Pheromonable> touched = new ArrayList<Pheromonable>();
+
+	/**
+	 * True if the next collection has to go over the whole graph.
+	 */
+	protected boolean scanAll = true;
+
+	/**
+	 * Pending changes : element ids, kind of element, attributes and values.
+	 * A null value removes the attribute.
+	 */
+	protected final ArrayList<String> ids = new ArrayList<String>();
+	protected final ArrayList<Boolean> edges = new ArrayList<Boolean>();
+	protected final ArrayList<String> attributes = new ArrayList<String>();
+	protected final ArrayList<Object> values = new ArrayList<Object>();
+
+	/**
+	 * Names of the colonies by marker, during a collection.
+	 */
+	protected String[] colonies = new String[0];
+
+	/**
+	 * Number of collections done.
+	 */
+	protected int pass;
+
+	/**
+	 * Number of attribute changes applied since the creation of the publisher.
+	 */
+	protected long changeCount;
+
+	/**
+	 * New publisher.
+	 * 
+	 * @param ctx
+	 *            ants context
+	 * @param prefix
+	 *            prefix of the published attributes
+	 * @param threshold
+	 *            minimal change of a value to be published
+	 */
+	public ResultPublisher(AntContext ctx, String prefix, float threshold) {
+		this.ctx = ctx;
+		this.colonyAttribute = prefix + "colony";
+		this.antsAttribute = prefix + "ants";
+		this.pheromoneAttribute = prefix + "pheromone";
+		this.threshold = threshold;
+	}
+
+	public void setThreshold(float threshold) {
+		this.threshold = threshold;
+	}
+
+	public long getChangeCount() {
+		return changeCount;
+	}
+
+	/**
+	 * Publish the changes of the results since the last publication.
+	 * 
+	 * @param graph
+	 *            graph to write to
+	 */
+	public void publish(Graph graph) {
+		ctx.lock();
+
+		try {
+			collect();
+		} finally {
+			ctx.unlock();
+		}
+
+		for (int i = 0; i < ids.size(); i++) {
+			Element e = edges.get(i) ? graph.getEdge(ids.get(i)) : graph
+					.getNode(ids.get(i));
+
+			// The graph may already have removed the element.
+			if (e == null)
+				continue;
+
+			if (values.get(i) == null)
+				e.removeAttribute(attributes.get(i));
+			else
+				e.setAttribute(attributes.get(i), values.get(i));
+		}
+
+		changeCount += ids.size();
+
+		ids.clear();
+		edges.clear();
+		attributes.clear();
+		values.clear();
+	}
+
+	/**
+	 * Notify the publisher that the results of an element may change. This is
+	 * called by the context when the element becomes active.
+	 * 
+	 * @param element
+	 *            the activated element
+	 */
+	public void touch(Pheromonable element) {
+		if (!scanAll)
+			touched.add(element);
+	}
+
+	/**
+	 * Notify the publisher that an element has been removed from the graph.
+	 * 
+	 * @param element
+	 *            the removed element
+	 */
+	public void forget(Pheromonable element) {
+		published.remove(element);
+	}
+
+	/**
+	 * Forget the published values, all the results will be published again.
+	 */
+	public void clear() {
+		published.clear();
+		touched.clear();
+		scanAll = true;
+	}
+
+	/**
+	 * Compare the results of the elements which may have changed to the
+	 * published ones and record the changes. This has to be called while the
+	 * context is locked.
+	 */
+	protected void collect() {
+		AntParams.DropOn dropOn = ctx.getAntParams().getDropPheromoneOn();
+		int markers = 0;
+
+		for (Colony colony : ctx.eachColony())
+			markers = Math.max(markers, colony.getIndex() + 1);
+
+		if (colonies.length < markers)
+			colonies = new String[markers];
+
+		for (Colony colony : ctx.eachColony())
+			colonies[colony.getIndex()] = colony.getName();
+
+		pass++;
+
+		if (scanAll) {
+			for (AntNode n : ctx.eachNode())
+				visit(n, dropOn, markers);
+
+			if (dropOn.onEdges)
+				for (AntEdge e : ctx.eachEdge())
+					visit(e, dropOn, markers);
+
+			scanAll = false;
+		} else {
+			// Elements may have been removed since they were activated.
+			for (int i = 0; i < touched.size(); i++)
+				if (isInGraph(touched.get(i)))
+					visit(touched.get(i), dropOn, markers);
+
+			for (int i = 0; i < ctx.activeEdgeCount; i++)
+				visit(ctx.activeEdges[i], dropOn, markers);
+
+			for (int i = 0; i < ctx.activeNodeCount; i++)
+				visit(ctx.activeNodes[i], dropOn, markers);
+
+			// Retired elements keep changing, loads evaporate on read.
+			Pheromonable[] others = published.keySet().toArray(
+					new Pheromonable[published.size()]);
+
+			for (int i = 0; i < others.length; i++)
+				visit(others[i], dropOn, markers);
+		}
+
+		touched.clear();
+
+		Iterator<Published> it = published.values().iterator();
+
+		while (it.hasNext()) {
+			Published p = it.next();
+
+			if (p.colony < 0 && p.ants == 0 && p.load == 0)
+				it.remove();
+		}
+	}
+
+	/**
+	 * Check if an element is still in the internal graph of the context.
+	 */
+	protected boolean isInGraph(Pheromonable element) {
+		if (element instanceof AntNode)
+			return ((AntNode) element).getDenseIndex() >= 0;
+
+		AntEdge e = (AntEdge) element;
+
+		return ctx.getInternalGraph().getEdge(e.getId()) == e;
+	}
+
+	/**
+	 * Compute the results of an element and record their changes, unless the
+	 * element has already been visited by the current collection.
+	 */
+	protected void visit(Pheromonable element, AntParams.DropOn dropOn,
+			int markers) {
+		Published last = published.get(element);
+
+		if (last != null && last.pass == pass)
+			return;
+
+		if (element instanceof AntNode) {
+			AntNode n = (AntNode) element;
+			int dominant = -1, max = 0;
+
+			for (Colony colony : ctx.eachColony()) {
+				int count = n.getAntCountForColony(colony);
+
+				if (count > max) {
+					max = count;
+					dominant = colony.getIndex();
+				}
+			}
+
+			collect(n, n.getId(), false, dominant, n.getTotalAntCount(),
+					dropOn.onNodes ? n.getPheromones().getTotalLoad() : 0);
+		} else if (dropOn.onEdges) {
+			AntEdge e = (AntEdge) element;
+			Pheromones p = e.getPheromones();
+			int dominant = -1;
+			float max = 0;
+
+			for (int m = 0; m < markers; m++) {
+				float load = p.getLoad(m);
+
+				if (load > max) {
+					max = load;
+					dominant = m;
+				}
+			}
+
+			collect(e, e.getId(), true, dominant, -1, p.getTotalLoad());
+		}
+	}
+
+	/**
+	 * Record the changes of an element.
+	 * 
+	 * @param ants
+	 *            number of ants, negative if not published
+	 */
+	protected void collect(Pheromonable element, String id, boolean edge,
+			int colony, float ants, float load) {
+		Published p = published.get(element);
+
+		if (p == null) {
+			if (colony < 0 && ants <= 0 && load == 0)
+				return;
+
+			p = new Published();
+			published.put(element, p);
+		}
+
+		p.pass = pass;
+
+		if (colony != p.colony) {
+			add(id, edge, colonyAttribute, colony < 0 ? null
+					: colonies[colony]);
+			p.colony = colony;
+		}
+
+		if (ants >= 0 && Math.abs(ants - p.ants) > threshold) {
+			add(id, edge, antsAttribute, (int) ants);
+			p.ants = ants;
+		}
+
+		if (Math.abs(load - p.load) > threshold || (load == 0 && p.load != 0)) {
+			add(id, edge, pheromoneAttribute, load);
+			p.load = load;
+		}
+	}
+
+	protected void add(String id, boolean edge, String attribute, Object value) {
+		ids.add(id);
+		edges.add(edge);
+		attributes.add(attribute);
+		values.add(value);
+	}
+}
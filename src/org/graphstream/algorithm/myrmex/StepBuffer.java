@@ -0,0 +1,216 @@
+/*
+ * This file is part of AntCo2.
+ *
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Side effects produced by a chunk of ants during a parallel step. Ants of a
+ * chunk do not touch shared nodes and pheromones directly, they record their
+ * moves and drops here. The buffer is then merged into the context at the
+ * commit barrier, before edges and nodes are stepped.
+ *
+ * @author adutot, gsavin
+ *
+ */
+class StepBuffer {
+	/**
+	 * Ants which have moved, with the nodes they left and reached.
+	 */
+	protected Ant[] movedAnts = new Ant[16];
+	protected AntNode[] movedFrom = new AntNode[16];
+	protected AntNode[] movedTo = new AntNode[16];
+	protected int moves;
+
+	/**
+	 * Random stream of the chunk.
+	 */
+	protected SplittableRandom random;
+
+	/**
+	 * Pheromones dropped, with the element they were dropped on.
+	 */
+	protected Pheromonable[] dropTargets = new Pheromonable[16];
+	protected Pheromone<?>[] drops = new Pheromone<?>[16];
+	protected int dropCount;
+
+	/**
+	 * Plain loads dropped, with the element and marker they were dropped on.
+	 */
+	protected Pheromonable[] loadTargets = new Pheromonable[16];
+	protected int[] loadMarkers = new int[16];
+	protected float[] loads = new float[16];
+	protected int loadCount;
+
+	/**
+	 * Counters, same as the ones of the context.
+	 */
+	protected int jumps;
+	protected int surpop;
+	protected int migrations;
+	protected int[] jumpsPerColony = new int[1];
+
+	/**
+	 * Record that an ant goes from a node to another.
+	 *
+	 * @param ant
+	 *            the ant
+	 * @param from
+	 *            node left by the ant, can be null
+	 * @param to
+	 *            node reached by the ant, can be null
+	 */
+	public void move(Ant ant, AntNode from, AntNode to) {
+		if (moves == movedAnts.length) {
+			int size = moves * 2;
+			movedAnts = Arrays.copyOf(movedAnts, size);
+			movedFrom = Arrays.copyOf(movedFrom, size);
+			movedTo = Arrays.copyOf(movedTo, size);
+		}
+
+		movedAnts[moves] = ant;
+		movedFrom[moves] = from;
+		movedTo[moves] = to;
+		moves++;
+	}
+
+	/**
+	 * Record a pheromone drop.
+	 *
+	 * @param target
+	 *            element on which pheromone is dropped
+	 * @param pheromone
+	 *            the dropped pheromone
+	 */
+	public void drop(Pheromonable target, Pheromone<?> pheromone) {
+		if (dropCount == drops.length) {
+			int size = dropCount * 2;
+			dropTargets = Arrays.copyOf(dropTargets, size);
+			drops = Arrays.copyOf(drops, size);
+		}
+
+		dropTargets[dropCount] = target;
+		drops[dropCount] = pheromone;
+		dropCount++;
+	}
+
+	/**
+	 * Record a drop of a plain load of pheromone.
+	 *
+	 * @param target
+	 *            element on which pheromone is dropped
+	 * @param marker
+	 *            marker of the pheromone
+	 * @param load
+	 *            the dropped load
+	 */
+	public void drop(Pheromonable target, int marker, float load) {
+		if (loadCount == loads.length) {
+			int size = loadCount * 2;
+			loadTargets = Arrays.copyOf(loadTargets, size);
+			loadMarkers = Arrays.copyOf(loadMarkers, size);
+			loads = Arrays.copyOf(loads, size);
+		}
+
+		loadTargets[loadCount] = target;
+		loadMarkers[loadCount] = marker;
+		loads[loadCount] = load;
+		loadCount++;
+	}
+
+	public void incrJumps(int colony) {
+		jumps++;
+
+		if (colony >= jumpsPerColony.length)
+			jumpsPerColony = Arrays.copyOf(jumpsPerColony, colony + 1);
+
+		jumpsPerColony[colony]++;
+	}
+
+	public void incrSurpop() {
+		surpop++;
+	}
+
+	public void incrMigrations() {
+		migrations++;
+	}
+
+	/**
+	 * Apply the recorded effects to the context and clear the buffer. Effects
+	 * are applied in the order they were recorded.
+	 *
+	 * @param ctx
+	 *            ants context
+	 */
+	public void merge(AntContext ctx) {
+		for (int i = 0; i < moves; i++) {
+			if (movedFrom[i] != null)
+				movedFrom[i].unregisterAnt(movedAnts[i]);
+
+			if (movedTo[i] != null)
+				movedTo[i].registerAnt(movedAnts[i]);
+		}
+
+		for (int i = 0; i < dropCount; i++) {
+			dropTargets[i].ensurePheromones().drop(drops[i]);
+			ctx.deposited(drops[i].getMarker(), drops[i].getLoad());
+		}
+
+		for (int i = 0; i < loadCount; i++) {
+			loadTargets[i].ensurePheromones().drop(loadMarkers[i], loads[i]);
+			ctx.deposited(loadMarkers[i], loads[i]);
+		}
+
+		ctx.jumps += jumps;
+		ctx.surpop += surpop;
+		ctx.migrations += migrations;
+
+		if (ctx.jumpsPerColony.length < jumpsPerColony.length)
+			ctx.jumpsPerColony = Arrays.copyOf(ctx.jumpsPerColony,
+					jumpsPerColony.length);
+
+		for (int i = 0; i < jumpsPerColony.length; i++)
+			ctx.jumpsPerColony[i] += jumpsPerColony[i];
+
+		clear();
+	}
+
+	/**
+	 * Forget all recorded effects.
+	 */
+	public void clear() {
+		Arrays.fill(movedAnts, 0, moves, null);
+		Arrays.fill(movedFrom, 0, moves, null);
+		Arrays.fill(movedTo, 0, moves, null);
+		Arrays.fill(dropTargets, 0, dropCount, null);
+		Arrays.fill(drops, 0, dropCount, null);
+		Arrays.fill(loadTargets, 0, loadCount, null);
+		Arrays.fill(jumpsPerColony, 0);
+
+		moves = 0;
+		dropCount = 0;
+		loadCount = 0;
+		jumps = 0;
+		surpop = 0;
+		migrations = 0;
+	}
+}
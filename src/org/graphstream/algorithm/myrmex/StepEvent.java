@@ -0,0 +1,73 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted for each {@link AntContext#step()}. It covers
+ * the whole step and carries the counters of the step.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+@Name("org.graphstream.myrmex.Step")
+@Label("Ant Step")
+@Category( { "GraphStream", "Myrmex" })
+@Description("A step of an ant context")
+@StackTrace(false)
+public class StepEvent extends Event {
+	@Label("Step")
+	public int step;
+
+	@Label("Ants")
+	public int ants;
+
+	@Label("Nodes")
+	public int nodes;
+
+	@Label("Edges")
+	public int edges;
+
+	@Label("Colonies")
+	public int colonies;
+
+	@Label("Jumps")
+	@Description("Number of ants which have jumped during the step")
+	public int jumps;
+
+	@Label("Over Populated")
+	@Description("Number of over populated nodes encountered during the step")
+	public int surpop;
+
+	@Label("Migrations")
+	@Description("Number of nodes/edges migrations during the step")
+	public int migrations;
+
+	@Label("Pooled Ants")
+	@Description("Number of removed ants kept by colonies to be reused")
+	public int pooledAnts;
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted for each phase of a step : commit of the
+ * colonies, ants, evaporation of the pheromones, edges, nodes, population
+ * policy, sampling of the measures and of the pheromone changes, and capture
+ * of the snapshot.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+@Name("org.graphstream.myrmex.StepPhase")
+@Label("Ant Step Phase")
+@Category( { "GraphStream", "Myrmex" })
+@Description("A phase of a step of an ant context")
+@StackTrace(false)
+public class StepPhaseEvent extends Event {
+	public static final String COLONIES = "colonies";
+	public static final String ANTS = "ants";
+	public static final String PHEROMONES = "pheromones";
+	public static final String EDGES = "edges";
+	public static final String NODES = "nodes";
+	public static final String POPULATION = "population";
+	public static final String MEASURES = "measures";
+	public static final String DELTA = "delta";
+	public static final String SNAPSHOT = "snapshot";
+
+	@Label("Step")
+	public int step;
+
+	@Label("Phase")
+	public String phase;
+
+	/**
+	 * Create and begin the event of a phase.
+	 * 
+	 * @param step
+	 *            current step
+	 * @param phase
+	 *            name of the phase
+	 * @return the started event
+	 */
+	public static StepPhaseEvent start(int step, String phase) {
+		StepPhaseEvent e = new StepPhaseEvent();
+		e.step = step;
+		e.phase = phase;
+		e.begin();
+
+		return e;
+	}
+
+	/**
+	 * End this phase and start the next one.
+	 * 
+	 * @param next
+	 *            name of the next phase
+	 * @return the event of the next phase
+	 */
+	public StepPhaseEvent next(String next) {
+		commit();
+		return start(step, next);
+	}
+}
@@ -0,0 +1,556 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.graphstream.stream.Sink;
+
+/**
+ * Collect the events sent to the internal graph between two steps, and apply
+ * them as one batch. Elements added then removed within a batch cancel each
+ * other : neither the element nor its attributes nor its population are ever
+ * created. Remaining events are applied in their original order while the
+ * context is locked.
+ * 
+ * The number of pending events is bounded. When the bound is reached while
+ * events are pumped, the batch is applied immediately, so pumping a large
+ * number of events does not keep them all in the batch. This does not bound
+ * the queue of the {@link org.graphstream.stream.thread.ThreadProxyPipe}
+ * feeding the buffer, which grows until it is pumped by the next
+ * computation.
+ * 
+ * Events are received by a single thread, but batches may be applied by
+ * another one : {@link #seal()} closes the pending batch on the receiving
+ * thread, and {@link #applySealed()} applies the closed batches on the
+ * stepping thread while the next batch is being received.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class TopologyBuffer implements Sink {
+	protected static enum Kind {
+		NODE_ADDED, NODE_REMOVED, EDGE_ADDED, EDGE_REMOVED, GRAPH_CLEARED, STEP_BEGINS,
+		GRAPH_ATTRIBUTE_ADDED, GRAPH_ATTRIBUTE_CHANGED, GRAPH_ATTRIBUTE_REMOVED,
+		NODE_ATTRIBUTE_ADDED, NODE_ATTRIBUTE_CHANGED, NODE_ATTRIBUTE_REMOVED,
+		EDGE_ATTRIBUTE_ADDED, EDGE_ATTRIBUTE_CHANGED, EDGE_ATTRIBUTE_REMOVED
+	}
+
+	/**
+	 * A pending event.
+	 */
+	protected static class Event {
+		Kind kind;
+		String sourceId;
+		long timeId;
+		String element;
+		String from;
+		String to;
+		boolean directed;
+		String attribute;
+		Object oldValue;
+		Object value;
+		double step;
+		boolean cancelled;
+
+		Event(Kind kind, String sourceId, long timeId, String element) {
+			this.kind = kind;
+			this.sourceId = sourceId;
+			this.timeId = timeId;
+			this.element = element;
+		}
+	}
+
+	protected final AntContext ctx;
+
+	/**
+	 * Sink to which batches are applied.
+	 */
+	protected final Sink target;
+
+	/**
+	 * Maximum number of pending events.
+	 */
+	protected int capacity;
+
+	/**
+	 * Attributes starting with this prefix are not forwarded, null if all
+	 * attributes are.
+	 */
+	protected String ignoredPrefix;
+
+	/**
+	 * Pending events, in their arrival order.
+	 */
+	protected ArrayList<Event> events = new ArrayList<Event>();
+
+	/**
+	 * Batches closed by {@link #seal()} and not applied yet, guarded by this
+	 * buffer.
+	 */
+	protected ArrayList<Event> sealed = new ArrayList<Event>();
+
+	/**
+	 * Events of the nodes and edges added in the pending batch, by element id.
+	 * The events of a node include the addition of the edges attached to it in
+	 * the same batch.
+	 */
+	protected HashMap<String, ArrayList<Event>> addedNodes = new HashMap<String, ArrayList<Event>>();
+	protected HashMap<String, ArrayList<Event>> addedEdges = new HashMap<String, ArrayList<Event>>();
+
+	/**
+	 * Number of events cancelled since the creation of the buffer.
+	 */
+	protected long cancelledCount;
+
+	/**
+	 * Number of events applied since the creation of the buffer.
+	 */
+	protected long appliedCount;
+
+	/**
+	 * New buffer.
+	 * 
+	 * @param ctx
+	 *            ants context, locked while batches are applied
+	 * @param target
+	 *            sink to which batches are applied, usually the internal
+	 *            graph
+	 * @param capacity
+	 *            maximum number of pending events
+	 */
+	public TopologyBuffer(AntContext ctx, Sink target, int capacity) {
+		this.ctx = ctx;
+		this.target = target;
+		this.capacity = Math.max(1, capacity);
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = Math.max(1, capacity);
+	}
+
+	/**
+	 * Stop forwarding the attributes starting with a prefix, for instance the
+	 * attributes written back to the source graph by the algorithm.
+	 * 
+	 * @param prefix
+	 *            prefix of the ignored attributes, null to forward all
+	 *            attributes
+	 */
+	public void setIgnoredPrefix(String prefix) {
+		this.ignoredPrefix = prefix;
+	}
+
+	/**
+	 * Number of events waiting to be applied, including cancelled ones.
+	 * 
+	 * @return pending events count
+	 */
+	public int getPendingCount() {
+		return events.size();
+	}
+
+	public long getCancelledCount() {
+		return cancelledCount;
+	}
+
+	public long getAppliedCount() {
+		return appliedCount;
+	}
+
+	/**
+	 * Apply the sealed batches and the pending events to the target, while the
+	 * context is locked.
+	 */
+	public void flush() {
+		seal();
+		applySealed();
+	}
+
+	/**
+	 * Close the pending batch. Its events can not be cancelled anymore, they
+	 * will be applied by the next call to {@link #applySealed()}. This has to
+	 * be called by the thread receiving the events.
+	 */
+	public void seal() {
+		if (events.isEmpty())
+			return;
+
+		synchronized (this) {
+			sealed.addAll(events);
+		}
+
+		events.clear();
+		addedNodes.clear();
+		addedEdges.clear();
+	}
+
+	/**
+	 * Apply the sealed batches to the target, while the context is locked.
+	 * This can be called by any thread.
+	 */
+	public void applySealed() {
+		ArrayList<Event> batch;
+
+		ctx.lock();
+
+		try {
+			// Taken under the context lock, so batches are applied in the
+			// order they have been sealed.
+			synchronized (this) {
+				if (sealed.isEmpty())
+					return;
+
+				batch = sealed;
+				sealed = new ArrayList<Event>();
+			}
+
+			for (int i = 0; i < batch.size(); i++) {
+				Event e = batch.get(i);
+
+				if (!e.cancelled) {
+					apply(e);
+					appliedCount++;
+				}
+			}
+		} finally {
+			ctx.unlock();
+		}
+	}
+
+	/**
+	 * Forget the pending events.
+	 */
+	public void clear() {
+		synchronized (this) {
+			sealed.clear();
+		}
+
+		events.clear();
+		addedNodes.clear();
+		addedEdges.clear();
+	}
+
+	protected void apply(Event e) {
+		switch (e.kind) {
+		case NODE_ADDED:
+			target.nodeAdded(e.sourceId, e.timeId, e.element);
+			break;
+		case NODE_REMOVED:
+			target.nodeRemoved(e.sourceId, e.timeId, e.element);
+			break;
+		case EDGE_ADDED:
+			target.edgeAdded(e.sourceId, e.timeId, e.element, e.from, e.to,
+					e.directed);
+			break;
+		case EDGE_REMOVED:
+			target.edgeRemoved(e.sourceId, e.timeId, e.element);
+			break;
+		case GRAPH_CLEARED:
+			target.graphCleared(e.sourceId, e.timeId);
+			break;
+		case STEP_BEGINS:
+			target.stepBegins(e.sourceId, e.timeId, e.step);
+			break;
+		case GRAPH_ATTRIBUTE_ADDED:
+			target.graphAttributeAdded(e.sourceId, e.timeId, e.attribute,
+					e.value);
+			break;
+		case GRAPH_ATTRIBUTE_CHANGED:
+			target.graphAttributeChanged(e.sourceId, e.timeId, e.attribute,
+					e.oldValue, e.value);
+			break;
+		case GRAPH_ATTRIBUTE_REMOVED:
+			target.graphAttributeRemoved(e.sourceId, e.timeId, e.attribute);
+			break;
+		case NODE_ATTRIBUTE_ADDED:
+			target.nodeAttributeAdded(e.sourceId, e.timeId, e.element,
+					e.attribute, e.value);
+			break;
+		case NODE_ATTRIBUTE_CHANGED:
+			target.nodeAttributeChanged(e.sourceId, e.timeId, e.element,
+					e.attribute, e.oldValue, e.value);
+			break;
+		case NODE_ATTRIBUTE_REMOVED:
+			target.nodeAttributeRemoved(e.sourceId, e.timeId, e.element,
+					e.attribute);
+			break;
+		case EDGE_ATTRIBUTE_ADDED:
+			target.edgeAttributeAdded(e.sourceId, e.timeId, e.element,
+					e.attribute, e.value);
+			break;
+		case EDGE_ATTRIBUTE_CHANGED:
+			target.edgeAttributeChanged(e.sourceId, e.timeId, e.element,
+					e.attribute, e.oldValue, e.value);
+			break;
+		case EDGE_ATTRIBUTE_REMOVED:
+			target.edgeAttributeRemoved(e.sourceId, e.timeId, e.element,
+					e.attribute);
+			break;
+		}
+	}
+
+	protected void push(Event e) {
+		if (isIgnored(e))
+			return;
+
+		events.add(e);
+
+		if (events.size() >= capacity)
+			flush();
+	}
+
+	/**
+	 * Record an event of an element, which may have been added in the pending
+	 * batch.
+	 */
+	protected void push(Event e, HashMap<String, ArrayList<Event>> added) {
+		if (isIgnored(e))
+			return;
+
+		ArrayList<Event> elementEvents = added.get(e.element);
+
+		if (elementEvents != null)
+			elementEvents.add(e);
+
+		push(e);
+	}
+
+	protected boolean isIgnored(Event e) {
+		return ignoredPrefix != null && e.attribute != null
+				&& e.attribute.startsWith(ignoredPrefix);
+	}
+
+	protected void cancel(ArrayList<Event> elementEvents) {
+		for (int i = 0; i < elementEvents.size(); i++) {
+			Event e = elementEvents.get(i);
+
+			if (!e.cancelled) {
+				e.cancelled = true;
+				cancelledCount++;
+
+				// Edges attached to a cancelled node are cancelled too.
+				if (e.kind == Kind.EDGE_ADDED) {
+					ArrayList<Event> edgeEvents = addedEdges.remove(e.element);
+
+					if (edgeEvents != null)
+						cancel(edgeEvents);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @see org.graphstream.stream.ElementSink
+	 */
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		Event e = new Event(Kind.NODE_ADDED, sourceId, timeId, nodeId);
+		ArrayList<Event> nodeEvents = new ArrayList<Event>();
+
+		nodeEvents.add(e);
+		addedNodes.put(nodeId, nodeEvents);
+		push(e);
+	}
+
+	/**
+	 * @see org.graphstream.stream.ElementSink
+	 */
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		ArrayList<Event> nodeEvents = addedNodes.remove(nodeId);
+
+		if (nodeEvents != null) {
+			cancel(nodeEvents);
+			cancelledCount++;
+		} else
+			push(new Event(Kind.NODE_REMOVED, sourceId, timeId, nodeId));
+	}
+
+	/**
+	 * @see org.graphstream.stream.ElementSink
+	 */
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		Event e = new Event(Kind.EDGE_ADDED, sourceId, timeId, edgeId);
+		ArrayList<Event> edgeEvents = new ArrayList<Event>();
+		ArrayList<Event> fromEvents = addedNodes.get(fromNodeId);
+		ArrayList<Event> toEvents = addedNodes.get(toNodeId);
+
+		e.from = fromNodeId;
+		e.to = toNodeId;
+		e.directed = directed;
+
+		edgeEvents.add(e);
+		addedEdges.put(edgeId, edgeEvents);
+
+		if (fromEvents != null)
+			fromEvents.add(e);
+
+		if (toEvents != null && toEvents != fromEvents)
+			toEvents.add(e);
+
+		push(e);
+	}
+
+	/**
+	 * @see org.graphstream.stream.ElementSink
+	 */
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		ArrayList<Event> edgeEvents = addedEdges.remove(edgeId);
+
+		if (edgeEvents != null) {
+			cancel(edgeEvents);
+			cancelledCount++;
+		} else
+			push(new Event(Kind.EDGE_REMOVED, sourceId, timeId, edgeId));
+	}
+
+	/**
+	 * @see org.graphstream.stream.ElementSink
+	 */
+	public void graphCleared(String sourceId, long timeId) {
+		for (int i = 0; i < events.size(); i++) {
+			if (!events.get(i).cancelled) {
+				events.get(i).cancelled = true;
+				cancelledCount++;
+			}
+		}
+
+		addedNodes.clear();
+		addedEdges.clear();
+
+		push(new Event(Kind.GRAPH_CLEARED, sourceId, timeId, null));
+	}
+
+	/**
+	 * @see org.graphstream.stream.ElementSink
+	 */
+	public void stepBegins(String sourceId, long timeId, double step) {
+		Event e = new Event(Kind.STEP_BEGINS, sourceId, timeId, null);
+		e.step = step;
+		push(e);
+	}
+
+	/**
+	 * @see org.graphstream.stream.AttributeSink
+	 */
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		Event e = new Event(Kind.GRAPH_ATTRIBUTE_ADDED, sourceId, timeId, null);
+		e.attribute = attribute;
+		e.value = value;
+		push(e);
+	}
+
+	/**
+	 * @see org.graphstream.stream.AttributeSink
+	 */
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		Event e = new Event(Kind.GRAPH_ATTRIBUTE_CHANGED, sourceId, timeId,
+				null);
+		e.attribute = attribute;
+		e.oldValue = oldValue;
+		e.value = newValue;
+		push(e);
+	}
+
+	/**
+	 * @see org.graphstream.stream.AttributeSink
+	 */
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		Event e = new Event(Kind.GRAPH_ATTRIBUTE_REMOVED, sourceId, timeId,
+				null);
+		e.attribute = attribute;
+		push(e);
+	}
+
+	/**
+	 * @see org.graphstream.stream.AttributeSink
+	 */
+	public void nodeAttributeAdded(String sourceId, long timeId,
+			String nodeId, String attribute, Object value) {
+		Event e = new Event(Kind.NODE_ATTRIBUTE_ADDED, sourceId, timeId, nodeId);
+		e.attribute = attribute;
+		e.value = value;
+		push(e, addedNodes);
+	}
+
+	/**
+	 * @see org.graphstream.stream.AttributeSink
+	 */
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		Event e = new Event(Kind.NODE_ATTRIBUTE_CHANGED, sourceId, timeId,
+				nodeId);
+		e.attribute = attribute;
+		e.oldValue = oldValue;
+		e.value = newValue;
+		push(e, addedNodes);
+	}
+
+	/**
+	 * @see org.graphstream.stream.AttributeSink
+	 */
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		Event e = new Event(Kind.NODE_ATTRIBUTE_REMOVED, sourceId, timeId,
+				nodeId);
+		e.attribute = attribute;
+		push(e, addedNodes);
+	}
+
+	/**
+	 * @see org.graphstream.stream.AttributeSink
+	 */
+	public void edgeAttributeAdded(String sourceId, long timeId,
+			String edgeId, String attribute, Object value) {
+		Event e = new Event(Kind.EDGE_ATTRIBUTE_ADDED, sourceId, timeId, edgeId);
+		e.attribute = attribute;
+		e.value = value;
+		push(e, addedEdges);
+	}
+
+	/**
+	 * @see org.graphstream.stream.AttributeSink
+	 */
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		Event e = new Event(Kind.EDGE_ATTRIBUTE_CHANGED, sourceId, timeId,
+				edgeId);
+		e.attribute = attribute;
+		e.oldValue = oldValue;
+		e.value = newValue;
+		push(e, addedEdges);
+	}
+
+	/**
+	 * @see org.graphstream.stream.AttributeSink
+	 */
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		Event e = new Event(Kind.EDGE_ATTRIBUTE_REMOVED, sourceId, timeId,
+				edgeId);
+		e.attribute = attribute;
+		push(e, addedEdges);
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of AntCo2.
+ *
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex;
+
+/**
+ * Probabilities for an ant of a colony to cross each edge of a node. The
+ * weight of an edge is its pheromone load for the colony marker to the power
+ * of alpha, times its value to the power of beta. If there is no pheromone of
+ * the colony around the node, only values are considered.
+ *
+ * Tables are immutable. They are cached by nodes and built once per step,
+ * whatever the number of ants standing on the node. Edges are sampled by a
+ * binary search on the cumulative weights.
+ *
+ * @author adutot, gsavin
+ *
+ */
+public class TransitionTable {
+	/**
+	 * Edges of the node.
+	 */
+	protected final AntEdge[] edges;
+
+	/**
+	 * Cumulative weights of the edges.
+	 */
+	protected final double[] cumulative;
+
+	/**
+	 * Step at which the table was built.
+	 */
+	protected final int step;
+
+	/**
+	 * Build the table of a node for a colony.
+	 *
+	 * @param ctx
+	 *            ants context
+	 * @param node
+	 *            the node
+	 * @param colony
+	 *            the colony
+	 */
+	public TransitionTable(AntContext ctx, AntNode node, Colony colony) {
+		AntParams params = ctx.getAntParams();
+		CompactAdjacency adjacency = ctx.getInternalGraph().getAdjacency();
+		int index = node.getDenseIndex();
+		int degree = node.getDegree();
+		int marker = colony.getIndex();
+		boolean pheromones = false;
+
+		this.edges = new AntEdge[degree];
+		this.cumulative = new double[degree];
+		this.step = ctx.getCurrentStep();
+
+		for (int i = 0; i < degree; i++) {
+			edges[i] = adjacency.getEdge(index, i);
+
+			if (edges[i].getPheromones().getLoad(marker) > 0)
+				pheromones = true;
+		}
+
+		double sum = 0;
+
+		for (int i = 0; i < degree; i++) {
+			double w = edges[i].getWeightPower(params.beta);
+
+			if (pheromones)
+				w *= pow(edges[i].getPheromones().getLoad(marker),
+						params.alpha);
+
+			sum += w;
+			cumulative[i] = sum;
+		}
+	}
+
+	/**
+	 * Number of edges in the table.
+	 *
+	 * @return the node degree when the table was built
+	 */
+	public int size() {
+		return edges.length;
+	}
+
+	/**
+	 * The i-th edge of the table.
+	 *
+	 * @param i
+	 *            index of the edge
+	 * @return the edge
+	 */
+	public AntEdge getEdge(int i) {
+		return edges[i];
+	}
+
+	/**
+	 * Probability of the i-th edge.
+	 *
+	 * @param i
+	 *            index of the edge
+	 * @return the probability to cross the edge
+	 */
+	public double getProbability(int i) {
+		double total = cumulative[cumulative.length - 1];
+		double w = cumulative[i] - (i > 0 ? cumulative[i - 1] : 0);
+
+		return total > 0 ? w / total : 1.0 / edges.length;
+	}
+
+	/**
+	 * Step at which the table was built.
+	 *
+	 * @return the build step
+	 */
+	public int getStep() {
+		return step;
+	}
+
+	/**
+	 * Draw an edge according to the probabilities of the table.
+	 *
+	 * @param r
+	 *            a random number in [0,1[
+	 * @return the chosen edge, or null if there is no edge
+	 * @complexity O(log(degree))
+	 */
+	public AntEdge sample(double r) {
+		int n = edges.length;
+
+		if (n == 0)
+			return null;
+
+		double total = cumulative[n - 1];
+
+		if (!(total > 0))
+			return edges[(int) (r * n)];
+
+		double x = r * total;
+		int low = 0, high = n - 1;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (cumulative[middle] > x)
+				high = middle;
+			else
+				low = middle + 1;
+		}
+
+		return edges[low];
+	}
+
+	/**
+	 * Check if this table can still be used for a node.
+	 *
+	 * @param ctx
+	 *            ants context
+	 * @param node
+	 *            the node of the table
+	 * @return true if the table is up to date
+	 */
+	public boolean isValid(AntContext ctx, AntNode node) {
+		return step == ctx.getCurrentStep() && edges.length == node.getDegree();
+	}
+
+	/**
+	 * Power function specialized for the small integer exponents commonly used
+	 * for alpha and beta, falling back to {@link Math#pow(double, double)}.
+	 *
+	 * @param x
+	 *            the base
+	 * @param e
+	 *            the exponent
+	 * @return x to the power of e
+	 */
+	public static double pow(double x, float e) {
+		if (e == 1)
+			return x;
+		if (e == 0)
+			return 1;
+		if (e == 2)
+			return x * x;
+		if (e == 3)
+			return x * x * x;
+		if (e == 4) {
+			double x2 = x * x;
+			return x2 * x2;
+		}
+		if (e == 0.5f)
+			return Math.sqrt(x);
+
+		return Math.pow(x, e);
+	}
+}
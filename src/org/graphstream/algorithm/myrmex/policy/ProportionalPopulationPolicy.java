@@ -14,6 +14,7 @@
 
 package org.graphstream.algorithm.myrmex.policy;
 
+import org.graphstream.algorithm.myrmex.Ant;
 import org.graphstream.algorithm.myrmex.AntContext;
 import org.graphstream.algorithm.myrmex.AntNode;
 import org.graphstream.algorithm.myrmex.AntParams;
@@ -96,16 +97,21 @@ public class ProportionalPopulationPolicy implements PopulationPolicy {
 						addAnt(color, null, node);
 				}
 			} else {
-				for (int i = 0; i < nAntsPerClr; ++i)
-					addAnt(color, null, node);
+				addAnts(color, node, nAntsPerClr);
 			}
 		}
 
 		lastColony = (lastColony + params.antsPerVertex) % nClr;
 	}
 
+	/**
+	 * Remove the ants brought by the node. Ants standing on the node are
+	 * removed first, the ones in excess are relocated by the context. Other
+	 * ants are then removed arbitrarily to complete the count.
+	 */
 	public void nodeRemoved(AntNode node) {
 		AntParams params = ctx.getAntParams();
+		int[] toRemove = new int[ctx.getColonyCount()];
 
 		for (Colony color : ctx.eachColony()) {
 			int nAntsPerClr = params.antsPerVertex / ctx.getColonyCount();
@@ -113,8 +119,23 @@ public class ProportionalPopulationPolicy implements PopulationPolicy {
 			if (params.antsPerVertexPerColony > 0)
 				nAntsPerClr = params.antsPerVertexPerColony;
 
-			removeAnts(color, nAntsPerClr);
+			toRemove[color.getIndex()] = nAntsPerClr;
+		}
+
+		for (Ant ant : node.getResidents()) {
+			Colony color = ant.getColony();
+			int index = color.getIndex();
+
+			if (index < toRemove.length && toRemove[index] > 0
+					&& color.removeAnt(ant)) {
+				toRemove[index]--;
+				antCount--;
+			}
 		}
+
+		for (Colony color : ctx.eachColony())
+			if (toRemove[color.getIndex()] > 0)
+				removeAnts(color, toRemove[color.getIndex()]);
 	}
 
 	public void colonyAdded(Colony color) {
@@ -148,10 +169,10 @@ public class ProportionalPopulationPolicy implements PopulationPolicy {
 		int toAddPerNode = averageAntCountPerColony / nodeCount;
 		int added = 0;
 
-		for (AntNode node : ctx.eachNode()) {
-			for (int i = 0; i < toAddPerNode; ++i) {
-				addAnt(color, null, node);
-				added++;
+		if (toAddPerNode > 0) {
+			for (AntNode node : ctx.eachNode()) {
+				addAnts(color, node, toAddPerNode);
+				added += toAddPerNode;
 			}
 		}
 
@@ -181,6 +202,11 @@ public class ProportionalPopulationPolicy implements PopulationPolicy {
 		antCount++;
 	}
 
+	protected void addAnts(Colony colony, AntNode node, int count) {
+		colony.addAnts(node, count);
+		antCount += count;
+	}
+
 	protected void removeAnts(Colony colony, int count) {
 		colony.removeAnts(count);
 		antCount -= count;
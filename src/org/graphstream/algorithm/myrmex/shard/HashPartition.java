@@ -0,0 +1,41 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex.shard;
+
+/**
+ * Partition of the nodes according to the hash of their id. The partition
+ * only depends on the ids, so shards running in separate JVMs agree on it.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class HashPartition implements ShardPartition {
+	public int getShard(String nodeId, int shardCount) {
+		int h = nodeId.hashCode();
+
+		// Spread the bits, ids often only differ by their last characters.
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+
+		return (h & 0x7fffffff) % shardCount;
+	}
+}
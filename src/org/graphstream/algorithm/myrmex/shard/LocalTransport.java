@@ -0,0 +1,141 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex.shard;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Transport between shards of the same JVM. Each shard has a bounded queue in
+ * which the other shards put their messages.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class LocalTransport implements ShardTransport {
+	protected final ArrayList<BlockingQueue<ShardMessage>> inboxes;
+
+	protected final int shard;
+
+	/**
+	 * First failure of a shard of the set, shared by all the endpoints.
+	 */
+	protected final AtomicReference<IOException> failure;
+
+	protected volatile boolean closed = false;
+
+	protected LocalTransport(ArrayList<BlockingQueue<ShardMessage>> inboxes,
+			AtomicReference<IOException> failure, int shard) {
+		this.inboxes = inboxes;
+		this.failure = failure;
+		this.shard = shard;
+	}
+
+	/**
+	 * Create the endpoints of a set of shards.
+	 * 
+	 * @param count
+	 *            number of shards
+	 * @param capacity
+	 *            maximum number of messages waiting in the queue of a shard
+	 * @return the endpoints, indexed by shard
+	 */
+	public static LocalTransport[] create(int count, int capacity) {
+		ArrayList<BlockingQueue<ShardMessage>> inboxes = new ArrayList<BlockingQueue<ShardMessage>>(
+				count);
+		AtomicReference<IOException> failure =
+				new AtomicReference<IOException>();
+		LocalTransport[] endpoints = new LocalTransport[count];
+
+		for (int i = 0; i < count; i++)
+			inboxes.add(new ArrayBlockingQueue<ShardMessage>(Math.max(1,
+					capacity)));
+
+		for (int i = 0; i < count; i++)
+			endpoints[i] = new LocalTransport(inboxes, failure, i);
+
+		return endpoints;
+	}
+
+	public int getShard() {
+		return shard;
+	}
+
+	public int getShardCount() {
+		return inboxes.size();
+	}
+
+	public boolean offer(int to, ShardMessage message, long timeout,
+			TimeUnit unit) throws IOException, InterruptedException {
+		checkFailure();
+		return inboxes.get(to).offer(message, timeout, unit);
+	}
+
+	public ShardMessage poll(long timeout, TimeUnit unit) throws IOException,
+			InterruptedException {
+		ShardMessage m = inboxes.get(shard).poll(timeout, unit);
+
+		if (m == null)
+			checkFailure();
+
+		return m;
+	}
+
+	/**
+	 * Report the failure of this shard to all the shards of the set.
+	 * 
+	 * @param e
+	 *            cause of the failure
+	 */
+	public void fail(IOException e) {
+		failure.compareAndSet(null, e);
+	}
+
+	/**
+	 * First failure reported by a shard of the set.
+	 * 
+	 * @return the failure, null if no shard has failed
+	 */
+	public IOException getFailure() {
+		return failure.get();
+	}
+
+	public void close() {
+		if (!closed) {
+			closed = true;
+			fail(new IOException("shard " + shard + " has been closed"));
+		}
+	}
+
+	protected void checkFailure() throws IOException {
+		if (closed)
+			throw new IOException("shard link is closed");
+
+		IOException e = failure.get();
+
+		if (e != null)
+			throw new IOException("shard link has failed", e);
+	}
+}
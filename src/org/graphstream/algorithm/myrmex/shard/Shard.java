@@ -0,0 +1,530 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex.shard;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.graphstream.algorithm.myrmex.Ant;
+import org.graphstream.algorithm.myrmex.AntEdge;
+import org.graphstream.algorithm.myrmex.AntGraph;
+import org.graphstream.algorithm.myrmex.AntNode;
+import org.graphstream.algorithm.myrmex.AntParams;
+import org.graphstream.algorithm.myrmex.Colony;
+import org.graphstream.algorithm.myrmex.Pheromonable;
+import org.graphstream.algorithm.myrmex.Pheromones;
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+
+/**
+ * A part of a graph stepped by its own context. The nodes of the graph are
+ * split between shards by a {@link ShardPartition}. A shard holds the nodes it
+ * owns, the edges attached to them and ghosts of the nodes of other shards
+ * at the end of these edges.
+ * 
+ * After each step of its context, a shard exchanges messages with the other
+ * shards :
+ * <ul>
+ * <li>ants standing on ghost nodes migrate to the owner of the node, which
+ * adds them to the colony of the same name ;</li>
+ * <li>loads dropped on boundary elements, the edges between two shards and,
+ * if pheromones are dropped on nodes, the nodes replicated on several shards,
+ * are sent to the other replicas ; once all the deposits are received, each
+ * replica sets its load to the evaporated load of the previous exchange plus
+ * all the deposits, so replicas stay equal ;</li>
+ * <li>a barrier tells the other shards that all the messages of the step have
+ * been sent.</li>
+ * </ul>
+ * Colonies are matched by name between shards, see
+ * {@link Colony#getName()}. Ants of a colony should not carry their own
+ * state, only their id and their node migrate. Migrated ants are named ants
+ * on their new shard, an automatic id is suffixed by "@" and the index of the
+ * shard which created the ant.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class Shard {
+	/**
+	 * An element replicated on several shards.
+	 */
+	protected static class Boundary {
+		final Pheromonable element;
+		final String id;
+		final boolean edge;
+
+		/**
+		 * Other shards holding the element.
+		 */
+		final int[] peers;
+
+		/**
+		 * Loads agreed by all replicas at the last exchange, and deposits of
+		 * the current exchange, by marker.
+		 */
+		float[] synced = new float[0];
+		float[] pending = new float[0];
+
+		Boundary(Pheromonable element, String id, boolean edge, int[] peers) {
+			this.element = element;
+			this.id = id;
+			this.edge = edge;
+			this.peers = peers;
+		}
+
+		void ensureMarker(int marker) {
+			if (marker >= synced.length) {
+				synced = Arrays.copyOf(synced, marker + 1);
+				pending = Arrays.copyOf(pending, marker + 1);
+			}
+		}
+	}
+
+	/**
+	 * Time waited for a message or for room in a queue, in milliseconds.
+	 */
+	public static final long POLL_TIMEOUT = 10;
+
+	protected final ShardContext ctx;
+
+	protected final ShardTransport transport;
+
+	protected final ShardPartition partition;
+
+	protected final int index;
+
+	protected final int count;
+
+	/**
+	 * Ghost nodes and the index of their owner.
+	 */
+	protected final ArrayList<AntNode> ghosts = new ArrayList<AntNode>();
+	protected int[] ghostOwners = new int[0];
+
+	protected final ArrayList<Boundary> boundaries = new ArrayList<Boundary>();
+	protected final HashMap<String, Boundary> edgeBoundaries = new HashMap<String, Boundary>();
+	protected final HashMap<String, Boundary> nodeBoundaries = new HashMap<String, Boundary>();
+
+	/**
+	 * Messages received but not handled yet, they may belong to the next
+	 * exchange.
+	 */
+	protected ArrayList<ShardMessage> received = new ArrayList<ShardMessage>();
+
+	/**
+	 * Ants arrived during the current exchange.
+	 */
+	protected final ArrayList<ShardMessage> immigrants = new ArrayList<ShardMessage>();
+
+	/**
+	 * Barriers received during the current exchange.
+	 */
+	protected int barriers;
+
+	protected long emigrantCount;
+	protected long immigrantCount;
+
+	/**
+	 * New shard.
+	 * 
+	 * @param ctx
+	 *            context of the shard
+	 * @param transport
+	 *            endpoint of the shard, giving its index and the number of
+	 *            shards
+	 * @param partition
+	 *            partition of the nodes, the same for all the shards
+	 */
+	public Shard(ShardContext ctx, ShardTransport transport,
+			ShardPartition partition) {
+		this.ctx = ctx;
+		this.transport = transport;
+		this.partition = partition;
+		this.index = transport.getShard();
+		this.count = transport.getShardCount();
+	}
+
+	public ShardContext getContext() {
+		return ctx;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getGhostCount() {
+		return ghosts.size();
+	}
+
+	public int getBoundaryCount() {
+		return boundaries.size();
+	}
+
+	/**
+	 * Number of ants which left this shard since its creation.
+	 * 
+	 * @return emigrants count
+	 */
+	public long getEmigrantCount() {
+		return emigrantCount;
+	}
+
+	/**
+	 * Number of ants which arrived on this shard since its creation.
+	 * 
+	 * @return immigrants count
+	 */
+	public long getImmigrantCount() {
+		return immigrantCount;
+	}
+
+	/**
+	 * Add the part of a graph owned by this shard to the context. The context
+	 * has to be initialized and its colonies added before, as nodes are
+	 * populated when they are added. All the shards have to load the same
+	 * graph.
+	 * 
+	 * @param source
+	 *            the whole graph
+	 */
+	public void load(Graph source) {
+		ctx.lock();
+
+		try {
+			AntGraph graph = ctx.getInternalGraph();
+			AntParams.DropOn dropOn = ctx.getAntParams().getDropPheromoneOn();
+			HashMap<String, Integer> ghostIds = new HashMap<String, Integer>();
+
+			for (Node n : source.getNodeSet())
+				if (owner(n) == index)
+					graph.addNode(n.getId());
+
+			for (Edge e : source.getEdgeSet()) {
+				Node n0 = e.getNode0();
+				Node n1 = e.getNode1();
+				int o0 = owner(n0);
+				int o1 = owner(n1);
+
+				if (o0 != index && o1 != index)
+					continue;
+
+				if (o0 != index)
+					addGhost(graph, n0.getId(), o0, ghostIds);
+				if (o1 != index)
+					addGhost(graph, n1.getId(), o1, ghostIds);
+
+				graph.addEdge(e.getId(), n0.getId(), n1.getId(), e
+						.isDirected());
+
+				if (o0 != o1 && dropOn.onEdges) {
+					AntEdge edge = graph.getEdge(e.getId());
+					addBoundary(new Boundary(edge, e.getId(), true,
+							new int[] { o0 == index ? o1 : o0 }));
+				}
+			}
+
+			if (dropOn.onNodes) {
+				for (AntNode node : ctx.eachNode()) {
+					Node n = source.getNode(node.getId());
+					HashSet<Integer> replicas = new HashSet<Integer>();
+
+					// A node is held by its owner and by the owners of its
+					// neighbors.
+					replicas.add(owner(n));
+
+					for (Edge e : n.getEachEdge())
+						replicas.add(owner(e.getOpposite(n)));
+
+					replicas.remove(index);
+
+					if (!replicas.isEmpty()) {
+						int[] peers = new int[replicas.size()];
+						int i = 0;
+
+						for (Integer r : replicas)
+							peers[i++] = r;
+
+						addBoundary(new Boundary(node, node.getId(), false,
+								peers));
+					}
+				}
+			}
+		} finally {
+			ctx.unlock();
+		}
+	}
+
+	protected int owner(Node n) {
+		return partition.getShard(n.getId(), count);
+	}
+
+	protected void addGhost(AntGraph graph, String id, int owner,
+			HashMap<String, Integer> ghostIds) {
+		if (ghostIds.containsKey(id))
+			return;
+
+		ghostIds.put(id, owner);
+		ctx.addGhost(id);
+		graph.addNode(id);
+
+		if (ghosts.size() == ghostOwners.length)
+			ghostOwners = Arrays.copyOf(ghostOwners, Math.max(16,
+					ghostOwners.length * 2));
+
+		ghostOwners[ghosts.size()] = owner;
+		ghosts.add(graph.<AntNode> getNode(id));
+	}
+
+	protected void addBoundary(Boundary b) {
+		boundaries.add(b);
+		(b.edge ? edgeBoundaries : nodeBoundaries).put(b.id, b);
+	}
+
+	/**
+	 * Run a step of the context, then exchange migrations and deposits with
+	 * the other shards. This returns once all the shards have sent their
+	 * messages of the step.
+	 * 
+	 * @throws IOException
+	 *             if the transport has failed
+	 */
+	public void step() throws IOException {
+		ctx.step();
+		exchange();
+	}
+
+	/**
+	 * Exchange the migrations and deposits of the current step.
+	 * 
+	 * @throws IOException
+	 *             if the transport has failed
+	 */
+	public void exchange() throws IOException {
+		int step = ctx.getCurrentStep();
+		float rho = ctx.persistence(1);
+
+		ctx.lock();
+
+		try {
+			for (int i = 0; i < ghosts.size(); i++) {
+				AntNode ghost = ghosts.get(i);
+
+				if (ghost.getResidentCount() == 0)
+					continue;
+
+				for (Ant ant : ghost.getResidents()) {
+					Colony colony = ant.getColony();
+					String id = ant.getId();
+
+					// Immigrants are named ants, automatic ids are qualified
+					// with their shard to stay unique on all hosts.
+					if (ant.isAutomaticId())
+						id = id + "@" + index;
+
+					if (colony.removeAnt(ant)) {
+						send(ghostOwners[i], ShardMessage.migration(index,
+								step, colony.getName(), id, ghost.getId()));
+						emigrantCount++;
+						ctx.incrMigrations();
+					}
+				}
+			}
+
+			for (int i = 0; i < boundaries.size(); i++) {
+				Boundary b = boundaries.get(i);
+				Pheromones p = b.element.getPheromones();
+
+				for (Colony colony : ctx.eachColony()) {
+					int m = colony.getIndex();
+					b.ensureMarker(m);
+
+					float deposit = p.getLoad(m) - rho * b.synced[m];
+
+					if (deposit != 0) {
+						b.pending[m] += deposit;
+
+						for (int peer : b.peers)
+							send(peer, ShardMessage.deposit(index, step, colony
+									.getName(), b.id, b.edge, deposit));
+					}
+				}
+			}
+		} finally {
+			ctx.unlock();
+		}
+
+		for (int i = 0; i < count; i++)
+			if (i != index)
+				send(i, ShardMessage.barrier(index, step));
+
+		receive(step);
+		apply(rho);
+	}
+
+	/**
+	 * Handle the messages of a step until all the barriers are received.
+	 */
+	protected void receive(int step) throws IOException {
+		ArrayList<ShardMessage> later = new ArrayList<ShardMessage>();
+
+		for (int i = 0; i < received.size(); i++) {
+			ShardMessage m = received.get(i);
+
+			if (m.step > step)
+				later.add(m);
+			else
+				handle(m);
+		}
+
+		received = later;
+
+		try {
+			while (barriers < count - 1) {
+				ShardMessage m = transport.poll(POLL_TIMEOUT,
+						TimeUnit.MILLISECONDS);
+
+				if (m == null)
+					continue;
+
+				// Shards which received all the barriers may already be
+				// sending the messages of the next step.
+				if (m.step > step)
+					received.add(m);
+				else
+					handle(m);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+
+		barriers = 0;
+	}
+
+	protected void handle(ShardMessage m) {
+		switch (m.kind) {
+		case BARRIER:
+			barriers++;
+			break;
+		case MIGRATION:
+			immigrants.add(m);
+			break;
+		case DEPOSIT:
+			Boundary b = (m.edge ? edgeBoundaries : nodeBoundaries)
+					.get(m.element);
+			Colony colony = getColony(m.colony);
+
+			if (b != null && colony != null) {
+				b.ensureMarker(colony.getIndex());
+				b.pending[colony.getIndex()] += m.load;
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Add the immigrants and set the loads of the boundary elements.
+	 */
+	protected void apply(float rho) {
+		ctx.lock();
+
+		try {
+			AntGraph graph = ctx.getInternalGraph();
+
+			for (int i = 0; i < immigrants.size(); i++) {
+				ShardMessage m = immigrants.get(i);
+				Colony colony = getColony(m.colony);
+				AntNode node = graph.getNode(m.element);
+
+				if (colony != null && node != null) {
+					colony.addAnt(m.id, node);
+					immigrantCount++;
+					ctx.incrMigrations();
+				}
+			}
+
+			immigrants.clear();
+
+			for (int i = 0; i < boundaries.size(); i++) {
+				Boundary b = boundaries.get(i);
+
+				for (int m = 0; m < b.synced.length; m++) {
+					if (b.synced[m] == 0 && b.pending[m] == 0)
+						continue;
+
+					float load = rho * b.synced[m] + b.pending[m];
+
+					b.synced[m] = load;
+					b.pending[m] = 0;
+
+					if (load != 0)
+						b.element.ensurePheromones().setLoad(m, load);
+					else
+						b.element.getPheromones().setLoad(m, 0);
+				}
+			}
+		} finally {
+			ctx.unlock();
+		}
+	}
+
+	protected Colony getColony(String name) {
+		for (Colony colony : ctx.eachColony())
+			if (colony.getName().equals(name))
+				return colony;
+
+		return null;
+	}
+
+	/**
+	 * Send a message, receiving the messages sent to this shard while the
+	 * queue of the receiver is full.
+	 */
+	protected void send(int to, ShardMessage m) throws IOException {
+		try {
+			while (!transport.offer(to, m, POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				ShardMessage r;
+
+				while ((r = transport.poll(0, TimeUnit.MILLISECONDS)) != null)
+					received.add(r);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * Release the transport of this shard and the resources of its context.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		transport.close();
+		ctx.terminate();
+	}
+}
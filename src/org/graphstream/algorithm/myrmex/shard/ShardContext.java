@@ -0,0 +1,72 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex.shard;
+
+import java.util.HashSet;
+
+import org.graphstream.algorithm.myrmex.AntContext;
+import org.graphstream.algorithm.myrmex.AntNode;
+import org.graphstream.algorithm.myrmex.PopulationPolicy;
+
+/**
+ * Context of a shard. The graph of the context holds the nodes owned by the
+ * shard and ghosts of the nodes of other shards linked to them. Ghosts are
+ * never populated, ants reaching them migrate to the owner of the node.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class ShardContext extends AntContext {
+	/**
+	 * Ids of the ghost nodes.
+	 */
+	protected final HashSet<String> ghosts = new HashSet<String>();
+
+	public PopulationPolicy getDefaultPopulationPolicy() {
+		return new ShardPopulationPolicy();
+	}
+
+	/**
+	 * Check if a node is a ghost of a node owned by another shard.
+	 * 
+	 * @param node
+	 *            the node
+	 * @return true if the node is a ghost
+	 */
+	public boolean isGhost(AntNode node) {
+		return ghosts.contains(node.getId());
+	}
+
+	/**
+	 * Declare a node as a ghost. This has to be done before the node is added
+	 * to the graph of the context.
+	 * 
+	 * @param nodeId
+	 *            id of the node
+	 */
+	public void addGhost(String nodeId) {
+		ghosts.add(nodeId);
+	}
+
+	public void clearGhosts() {
+		ghosts.clear();
+	}
+}
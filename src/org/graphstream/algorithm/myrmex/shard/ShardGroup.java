@@ -0,0 +1,219 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex.shard;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.graphstream.graph.Graph;
+
+/**
+ * Shards of a graph running in the same JVM, linked by a
+ * {@link LocalTransport}. Each shard is stepped by its own thread, a step of
+ * the group ends when all the shards have done their exchange. A shard which
+ * fails reports its failure to the other shards through the transport, the
+ * group is then terminated.
+ * 
+ * Shards running in separate JVMs are created one by one, with a
+ * {@link SocketTransport}, and stepped by their own loop.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class ShardGroup {
+	/**
+	 * Default maximum number of messages waiting in the queue of a shard.
+	 */
+	public static final int QUEUE_CAPACITY = 4096;
+
+	protected final Shard[] shards;
+
+	protected final LocalTransport[] transports;
+
+	protected final ExecutorService workers;
+
+	public ShardGroup(int count) {
+		this(count, new HashPartition(), QUEUE_CAPACITY);
+	}
+
+	/**
+	 * New group.
+	 * 
+	 * @param count
+	 *            number of shards
+	 * @param partition
+	 *            partition of the nodes
+	 * @param capacity
+	 *            maximum number of messages waiting in the queue of a shard
+	 */
+	public ShardGroup(int count, ShardPartition partition, int capacity) {
+		this.transports = LocalTransport.create(count, capacity);
+		this.shards = new Shard[count];
+
+		for (int i = 0; i < count; i++)
+			shards[i] = new Shard(new ShardContext(), transports[i], partition);
+
+		this.workers = Executors.newFixedThreadPool(count,
+				new ThreadFactory() {
+					int created = 0;
+
+					public synchronized Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "myrmex-shard-" + created++);
+						t.setDaemon(true);
+						return t;
+					}
+				});
+	}
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	public Shard getShard(int i) {
+		return shards[i];
+	}
+
+	/**
+	 * Initialize the contexts of the shards. Parameters of each context have
+	 * to be set before, see {@link ShardContext#getAntParams()}.
+	 */
+	public void init() {
+		for (Shard shard : shards)
+			shard.getContext().init();
+	}
+
+	/**
+	 * Add a colony to all the shards.
+	 * 
+	 * @param name
+	 *            name of the colony
+	 */
+	public void addColony(String name) {
+		for (Shard shard : shards)
+			shard.getContext().addColony(name);
+	}
+
+	/**
+	 * Load a graph in the shards, colonies have to be added before.
+	 * 
+	 * @param graph
+	 *            the whole graph
+	 */
+	public void load(Graph graph) {
+		for (Shard shard : shards)
+			shard.load(graph);
+	}
+
+	/**
+	 * Run a step on all the shards.
+	 * 
+	 * @throws IOException
+	 *             if a shard has failed, the group is then terminated
+	 */
+	public void step() throws IOException {
+		ArrayList<Future<Object>> steps = new ArrayList<Future<Object>>(
+				shards.length);
+
+		for (int i = 0; i < shards.length; i++) {
+			final Shard shard = shards[i];
+			final LocalTransport transport = transports[i];
+
+			steps.add(workers.submit(new Callable<Object>() {
+				public Object call() throws IOException {
+					try {
+						shard.step();
+					} catch (IOException e) {
+						transport.fail(e);
+						throw e;
+					} catch (RuntimeException e) {
+						transport.fail(new IOException(e));
+						throw e;
+					} catch (Error e) {
+						transport.fail(new IOException(e));
+						throw e;
+					}
+
+					return null;
+				}
+			}));
+		}
+
+		IOException failure = null;
+
+		for (Future<Object> f : steps) {
+			try {
+				f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failure = new IOException("interrupted");
+				transports[0].fail(failure);
+			} catch (ExecutionException e) {
+				if (failure == null)
+					failure = e.getCause() instanceof IOException ? (IOException) e
+							.getCause()
+							: new IOException(e.getCause());
+			}
+		}
+
+		if (failure != null) {
+			// Other shards report the failure of the first one.
+			IOException first = transports[0].getFailure();
+
+			terminate();
+			throw first != null ? first : failure;
+		}
+	}
+
+	/**
+	 * Total number of ants of all the shards.
+	 * 
+	 * @return ants count
+	 */
+	public int getAntCount() {
+		int ants = 0;
+
+		for (Shard shard : shards)
+			ants += shard.getContext().getAntCount();
+
+		return ants;
+	}
+
+	/**
+	 * Stop the workers and release the shards.
+	 */
+	public void terminate() {
+		workers.shutdown();
+
+		for (Shard shard : shards) {
+			try {
+				shard.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
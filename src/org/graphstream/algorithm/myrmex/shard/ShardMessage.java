@@ -0,0 +1,151 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex.shard;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Message exchanged between shards. Each message is tagged with the step of
+ * the exchange it belongs to, so messages of a shard already in the next step
+ * are kept for later.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class ShardMessage {
+	public static enum Kind {
+		/**
+		 * An ant of {@link #colony}, designated by {@link #id}, arrives on
+		 * node {@link #element} of the receiver.
+		 */
+		MIGRATION,
+		/**
+		 * Load {@link #load} of {@link #colony} has been dropped by the sender
+		 * on its copy of the node or edge {@link #element}.
+		 */
+		DEPOSIT,
+		/**
+		 * The sender has sent all its messages of the step.
+		 */
+		BARRIER
+	}
+
+	public final Kind kind;
+	public final int from;
+	public final int step;
+	public final String colony;
+	public final String id;
+	public final String element;
+	public final boolean edge;
+	public final float load;
+
+	protected ShardMessage(Kind kind, int from, int step, String colony,
+			String id, String element, boolean edge, float load) {
+		this.kind = kind;
+		this.from = from;
+		this.step = step;
+		this.colony = colony;
+		this.id = id;
+		this.element = element;
+		this.edge = edge;
+		this.load = load;
+	}
+
+	public static ShardMessage migration(int from, int step, String colony,
+			String ant, String node) {
+		return new ShardMessage(Kind.MIGRATION, from, step, colony, ant, node,
+				false, 0);
+	}
+
+	public static ShardMessage deposit(int from, int step, String colony,
+			String element, boolean edge, float load) {
+		return new ShardMessage(Kind.DEPOSIT, from, step, colony, null,
+				element, edge, load);
+	}
+
+	public static ShardMessage barrier(int from, int step) {
+		return new ShardMessage(Kind.BARRIER, from, step, null, null, null,
+				false, 0);
+	}
+
+	/**
+	 * Encode this message.
+	 * 
+	 * @param out
+	 *            stream to write to
+	 * @throws IOException
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeByte(kind.ordinal());
+		out.writeInt(from);
+		out.writeInt(step);
+
+		switch (kind) {
+		case MIGRATION:
+			out.writeUTF(colony);
+			out.writeUTF(id);
+			out.writeUTF(element);
+			break;
+		case DEPOSIT:
+			out.writeUTF(colony);
+			out.writeUTF(element);
+			out.writeBoolean(edge);
+			out.writeFloat(load);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Decode a message written by {@link #write(DataOutputStream)}.
+	 * 
+	 * @param in
+	 *            stream to read from
+	 * @return the message
+	 * @throws IOException
+	 */
+	public static ShardMessage read(DataInputStream in) throws IOException {
+		int k = in.readUnsignedByte();
+
+		if (k >= Kind.values().length)
+			throw new IOException("unknown message kind " + k);
+
+		Kind kind = Kind.values()[k];
+		int from = in.readInt();
+		int step = in.readInt();
+
+		switch (kind) {
+		case MIGRATION:
+			return migration(from, step, in.readUTF(), in.readUTF(), in
+					.readUTF());
+		case DEPOSIT:
+			String colony = in.readUTF();
+			String element = in.readUTF();
+			boolean edge = in.readBoolean();
+			return deposit(from, step, colony, element, edge, in.readFloat());
+		default:
+			return barrier(from, step);
+		}
+	}
+}
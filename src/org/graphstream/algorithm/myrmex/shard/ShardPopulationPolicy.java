@@ -0,0 +1,51 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex.shard;
+
+import org.graphstream.algorithm.myrmex.AntContext;
+import org.graphstream.algorithm.myrmex.AntNode;
+import org.graphstream.algorithm.myrmex.policy.ProportionalPopulationPolicy;
+
+/**
+ * Proportional population of the nodes owned by a shard. Ghost nodes do not
+ * bring any ant.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class ShardPopulationPolicy extends ProportionalPopulationPolicy {
+	protected ShardContext shardContext;
+
+	public void init(AntContext ctx) {
+		super.init(ctx);
+		this.shardContext = (ShardContext) ctx;
+	}
+
+	public void nodeAdded(AntNode node) {
+		if (!shardContext.isGhost(node))
+			super.nodeAdded(node);
+	}
+
+	public void nodeRemoved(AntNode node) {
+		if (!shardContext.isGhost(node))
+			super.nodeRemoved(node);
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex.shard;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link between a shard and the other shards of a sharded run. Each shard has
+ * its own transport endpoint. Messages sent by a shard to another one are
+ * received in the order they have been sent.
+ * 
+ * Queues of a transport are bounded : {@link #offer} gives up when the
+ * receiver is late, the sender then has to receive its own messages before
+ * trying again, so shards waiting for each other can not dead-lock.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public interface ShardTransport {
+	/**
+	 * Index of the shard owning this endpoint.
+	 * 
+	 * @return the shard index
+	 */
+	int getShard();
+
+	/**
+	 * Number of shards linked by the transport.
+	 * 
+	 * @return shards count
+	 */
+	int getShardCount();
+
+	/**
+	 * Send a message to another shard.
+	 * 
+	 * @param shard
+	 *            index of the receiver
+	 * @param message
+	 *            the message
+	 * @param timeout
+	 *            maximum time to wait for room in the queue
+	 * @param unit
+	 *            unit of the timeout
+	 * @return true if the message has been queued, false if the queue is still
+	 *         full after the timeout
+	 * @throws IOException
+	 *             if the link to the shard has failed
+	 * @throws InterruptedException
+	 */
+	boolean offer(int shard, ShardMessage message, long timeout, TimeUnit unit)
+			throws IOException, InterruptedException;
+
+	/**
+	 * Receive a message sent to this shard.
+	 * 
+	 * @param timeout
+	 *            maximum time to wait for a message
+	 * @param unit
+	 *            unit of the timeout
+	 * @return the message, or null if there is none after the timeout
+	 * @throws IOException
+	 *             if a link to a shard has failed
+	 * @throws InterruptedException
+	 */
+	ShardMessage poll(long timeout, TimeUnit unit) throws IOException,
+			InterruptedException;
+
+	/**
+	 * Release the resources of this endpoint.
+	 * 
+	 * @throws IOException
+	 */
+	void close() throws IOException;
+}
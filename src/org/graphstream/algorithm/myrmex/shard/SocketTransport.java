@@ -0,0 +1,311 @@
+/*
+ * This file is part of AntCo2.
+ * 
+ * AntCo2 is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * AntCo2 is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with AntCo2.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Copyright 2009 - 2010
+ * 	Antoine Dutot
+ * 	Guilhelm Savin
+ */
+package org.graphstream.algorithm.myrmex.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport between shards running in several JVMs of the same machine,
+ * through loopback sockets. Shard i listens on port {@code basePort + i} and
+ * opens one connection to each other shard.
+ * 
+ * Messages to a shard are queued in a bounded outbox and written by a thread
+ * per connection. Received messages are put in a bounded inbox by a thread per
+ * connection, a full inbox stops the reading and lets the socket apply the
+ * back pressure to the sender.
+ * 
+ * A connection closed by the other shard before this transport is closed is
+ * a failure, reported by {@link #poll(long, TimeUnit)} once the messages
+ * received before have been polled.
+ * 
+ * @author adutot, gsavin
+ * 
+ */
+public class SocketTransport implements ShardTransport {
+	/**
+	 * Maximum time to wait for the other shards when connecting.
+	 */
+	public static final long CONNECT_TIMEOUT = 60000;
+
+	protected final int shard;
+	protected final int count;
+	protected final int basePort;
+
+	protected final BlockingQueue<ShardMessage> inbox;
+
+	/**
+	 * Outboxes by shard, null for this shard.
+	 */
+	protected final ArrayList<BlockingQueue<ShardMessage>> outboxes;
+
+	/**
+	 * Open sockets and their threads, guarded by {@link #sockets}.
+	 */
+	protected final ArrayList<Socket> sockets = new ArrayList<Socket>();
+	protected final ArrayList<Thread> threads = new ArrayList<Thread>();
+
+	protected ServerSocket server;
+
+	/**
+	 * Error raised by a reading or writing thread, if any.
+	 */
+	protected volatile IOException failure;
+
+	protected volatile boolean closed = false;
+
+	/**
+	 * New endpoint, {@link #connect()} has to be called before use.
+	 * 
+	 * @param shard
+	 *            index of this shard
+	 * @param count
+	 *            number of shards
+	 * @param basePort
+	 *            port of the first shard
+	 * @param capacity
+	 *            maximum number of messages in each queue
+	 */
+	public SocketTransport(int shard, int count, int basePort, int capacity) {
+		this.shard = shard;
+		this.count = count;
+		this.basePort = basePort;
+		this.inbox = new ArrayBlockingQueue<ShardMessage>(Math.max(1,
+				capacity));
+		this.outboxes = new ArrayList<BlockingQueue<ShardMessage>>(count);
+
+		for (int i = 0; i < count; i++)
+			outboxes.add(i == shard ? null
+					: new ArrayBlockingQueue<ShardMessage>(Math.max(1,
+							capacity)));
+	}
+
+	/**
+	 * Listen for the other shards, then connect to each of them. This returns
+	 * once all the connections are open.
+	 * 
+	 * @throws IOException
+	 *             if a shard can not be reached, or if some shards did not
+	 *             connect before {@link #CONNECT_TIMEOUT}
+	 */
+	public void connect() throws IOException {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+
+		server = new ServerSocket();
+		server.setReuseAddress(true);
+		server.bind(new InetSocketAddress(loopback, basePort + shard));
+
+		Thread acceptor = new Thread(new Runnable() {
+			public void run() {
+				accept();
+			}
+		}, "myrmex-shard-" + shard + "-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+
+		for (int i = 0; i < count; i++) {
+			if (i == shard)
+				continue;
+
+			Socket socket = null;
+
+			while (socket == null) {
+				try {
+					socket = new Socket(loopback, basePort + i);
+				} catch (IOException e) {
+					if (System.currentTimeMillis() > deadline)
+						throw e;
+
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						throw new IOException("interrupted while connecting");
+					}
+				}
+			}
+
+			socket.setTcpNoDelay(true);
+			startWriter(socket, outboxes.get(i));
+		}
+
+		try {
+			acceptor.join(Math.max(1, deadline - System.currentTimeMillis()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (acceptor.isAlive()) {
+			close();
+			throw new IOException("some shards did not connect to shard "
+					+ shard);
+		}
+
+		checkFailure();
+	}
+
+	public int getShard() {
+		return shard;
+	}
+
+	public int getShardCount() {
+		return count;
+	}
+
+	public boolean offer(int to, ShardMessage message, long timeout,
+			TimeUnit unit) throws IOException, InterruptedException {
+		checkFailure();
+		return outboxes.get(to).offer(message, timeout, unit);
+	}
+
+	public ShardMessage poll(long timeout, TimeUnit unit) throws IOException,
+			InterruptedException {
+		ShardMessage m = inbox.poll(timeout, unit);
+
+		if (m == null)
+			checkFailure();
+
+		return m;
+	}
+
+	public void close() throws IOException {
+		closed = true;
+
+		synchronized (sockets) {
+			for (Thread t : threads)
+				t.interrupt();
+
+			for (Socket s : sockets)
+				s.close();
+		}
+
+		if (server != null)
+			server.close();
+	}
+
+	protected void accept() {
+		try {
+			for (int i = 0; i < count - 1; i++) {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				startReader(socket);
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	protected void startReader(final Socket socket) {
+		synchronized (sockets) {
+			sockets.add(socket);
+		}
+
+		Thread t = new Thread(new Runnable() {
+			public void run() {
+				try {
+					DataInputStream in = new DataInputStream(
+							new BufferedInputStream(socket.getInputStream()));
+
+					while (!closed)
+						inbox.put(ShardMessage.read(in));
+				} catch (EOFException e) {
+					// Messages received so far are still polled, the failure
+					// is reported once they have been handled.
+					fail(new IOException("shard link closed by peer", e));
+				} catch (InterruptedException e) {
+					// Closed.
+				} catch (IOException e) {
+					fail(e);
+				}
+			}
+		}, "myrmex-shard-" + shard + "-read");
+
+		t.setDaemon(true);
+
+		synchronized (sockets) {
+			threads.add(t);
+		}
+
+		t.start();
+	}
+
+	protected void startWriter(final Socket socket,
+			final BlockingQueue<ShardMessage> outbox) {
+		synchronized (sockets) {
+			sockets.add(socket);
+		}
+
+		Thread t = new Thread(new Runnable() {
+			public void run() {
+				try {
+					DataOutputStream out = new DataOutputStream(
+							new BufferedOutputStream(socket.getOutputStream()));
+
+					while (!closed) {
+						outbox.take().write(out);
+
+						// Flush only when there is nothing more to write.
+						if (outbox.isEmpty())
+							out.flush();
+					}
+				} catch (InterruptedException e) {
+					// Closed.
+				} catch (IOException e) {
+					fail(e);
+				}
+			}
+		}, "myrmex-shard-" + shard + "-write");
+
+		t.setDaemon(true);
+
+		synchronized (sockets) {
+			threads.add(t);
+		}
+
+		t.start();
+	}
+
+	protected void fail(IOException e) {
+		if (!closed && failure == null)
+			failure = e;
+	}
+
+	protected void checkFailure() throws IOException {
+		IOException e = failure;
+
+		if (e != null)
+			throw new IOException("shard link has failed", e);
+	}
+}